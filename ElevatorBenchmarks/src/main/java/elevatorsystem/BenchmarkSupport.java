@@ -0,0 +1,53 @@
+package elevatorsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// builds the fixtures the benchmarks share
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    // a stopped building whose cars are all STATIONARY and spread evenly between min_floor and max_floor, so every
+    // dispatch finds a car straight away and never waits. the cars have no capacity limit, as nothing ever boards
+    static Building parkedBuilding(int cars, int min_floor, int max_floor) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < cars; i++) {
+            ids.add(String.format("E%03d", i));
+        }
+        VirtualClock clock = new VirtualClock();
+        Building building = new Building("bench", ids, min_floor, max_floor, clock, ExecutionMode.SHARED_SCHEDULER);
+        quiet();
+        building.start();
+        Fleet fleet = building.fleet();
+        List<ElevatorRequest> rides = new ArrayList<>();
+        for (int slot = 0; slot < cars; slot++) {
+            int target = min_floor + 1 + (int) ((long) slot * (max_floor - min_floor - 1) / Math.max(cars - 1, 1));
+            ElevatorRequest ride = building.makeRequest(min_floor, target);
+            ride.process();
+            fleet.elevator(slot).move(ride);
+            rides.add(ride);
+        }
+        rides.forEach(ride -> ride.whenCompleted().join());
+        building.stop();
+        try {
+            building.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        clock.shutdown();
+        building.setCapacity(Integer.MAX_VALUE);
+        return building;
+    }
+
+    // turns off the simulator's java.util.logging output. the event log is switched off per fork with
+    // -Delevatorsystem.events=false, since it is decided once when the class loads
+    static void quiet() {
+        Logger.getLogger(Elevator.class.getName()).setLevel(Level.OFF);
+    }
+}
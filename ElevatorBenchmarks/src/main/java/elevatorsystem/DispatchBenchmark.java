@@ -0,0 +1,82 @@
+package elevatorsystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// moveFloors throughput for N cars and M concurrent callers, and the cost of the car selection alone. the cars are
+// parked, so every call is assigned at once and what is measured is the dispatch path, not waiting for a car.
+// assigned requests pile up in the car queues, so each iteration starts from a fresh building
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Delevatorsystem.events=false")
+public class DispatchBenchmark {
+
+    private static final int MIN_FLOOR = 1;
+    private static final int MAX_FLOOR = 60;
+
+    @Param({"4", "16", "64"})
+    public int cars;
+
+    private Building building;
+    private final DispatchStrategy nearest = new NearestCarStrategy();
+    private final DispatchStrategy costBased = new CostBasedStrategy();
+    private final DispatchStrategy whatIf = new WhatIfStrategy();
+    private ElevatorRequest probe;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        building = BenchmarkSupport.parkedBuilding(cars, MIN_FLOOR, MAX_FLOOR);
+        probe = building.makeRequest(MAX_FLOOR / 2, MAX_FLOOR);
+    }
+
+    private void moveFloors() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(MIN_FLOOR, MAX_FLOOR + 1);
+        int to = random.nextInt(MIN_FLOOR, MAX_FLOOR);
+        building.moveFloors(building.makeRequest(from, to >= from ? to + 1 : to));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void moveFloors01() {
+        moveFloors();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void moveFloors04() {
+        moveFloors();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void moveFloors16() {
+        moveFloors();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void moveFloors64() {
+        moveFloors();
+    }
+
+    @Benchmark
+    public int selectNearest() {
+        return nearest.select(building.fleet(), probe);
+    }
+
+    @Benchmark
+    public int selectCostBased() {
+        return costBased.select(building.fleet(), probe);
+    }
+
+    @Benchmark
+    public int selectWhatIf() {
+        return whatIf.select(building.fleet(), probe);
+    }
+}
@@ -0,0 +1,52 @@
+package elevatorsystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ElevatorMap is consulted on every floor a car passes. dropOff boards that many riders for one floor and lets them
+// all off there, miss is the common case of passing a floor where nobody gets off
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Delevatorsystem.events=false")
+public class ElevatorMapBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int riders;
+
+    private ElevatorMap map;
+    private ElevatorRequest[] requests;
+    private final List<ElevatorRequest> arrived = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Building building = new Building("bench", Collections.singletonList("E1"), 1, 60);
+        BenchmarkSupport.quiet();
+        map = new ElevatorMap(1, 60);
+        requests = new ElevatorRequest[riders];
+        for (int i = 0; i < riders; i++) {
+            requests[i] = building.makeRequest(1, 30);
+            requests[i].process();
+        }
+    }
+
+    @Benchmark
+    public boolean dropOff() {
+        for (ElevatorRequest request : requests) {
+            map.putRequest(request);
+        }
+        arrived.clear();
+        return map.takeArrivals(30, arrived);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return map.takeArrivals(31, arrived);
+    }
+}
@@ -0,0 +1,80 @@
+package elevatorsystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// latency of one car's stop plan with depth down calls waiting below it. rideCycle is one pickup and drop off along
+// a car's sweep up: put a rider from floor 50 to 51, then reachFloor() at 50 and 51 while the car carries on up
+// with someone going to the top floor. process is the next stop lookup an idle car makes on every wake up
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Delevatorsystem.events=false")
+public class QueueBenchmark {
+
+    private static final int PARK_FLOOR = 50;
+
+    @Param({"0", "16", "256", "4096"})
+    public int depth;
+
+    private ElevatorBlockingQueueV2 moving;
+    private ElevatorBlockingQueueV2 parked;
+    private ElevatorRequest hop;
+    private final List<ElevatorRequest> arrived = new ArrayList<>(); // never completed, hop rides again
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // never started: the benchmark drives the cars itself
+        Building building = new Building("bench", Arrays.asList("E1", "E2"), 1, 100);
+        building.setCapacity(Integer.MAX_VALUE); // depth calls wait on one car
+        BenchmarkSupport.quiet();
+        Elevator up = building.fleet().elevator(0);
+        Elevator idle = building.fleet().elevator(1);
+        moving = up.queue();
+        parked = idle.queue();
+        ride(up, building.makeRequest(1, PARK_FLOOR));
+        ride(idle, building.makeRequest(1, PARK_FLOOR));
+        ElevatorRequest through = building.makeRequest(PARK_FLOOR, 100);
+        through.process();
+        up.move(through);
+        up.step(); // boards them and sets off up, the car stays on its way up from here on
+        for (int i = 0; i < depth; i++) {
+            // below the cars and going down
+            for (ElevatorBlockingQueueV2 queue : Arrays.asList(moving, parked)) {
+                ElevatorRequest waiting = building.makeRequest(2 + i % (PARK_FLOOR - 10), 1);
+                waiting.process();
+                queue.put(waiting);
+            }
+        }
+        hop = building.makeRequest(PARK_FLOOR, PARK_FLOOR + 1);
+        hop.process();
+    }
+
+    private static void ride(Elevator car, ElevatorRequest request) {
+        request.process();
+        car.move(request);
+        while (car.step() != Elevator.IDLE) {
+            // doors and travel take no time here
+        }
+    }
+
+    @Benchmark
+    public boolean rideCycle() {
+        moving.put(hop);
+        moving.reachFloor(PARK_FLOOR, arrived);     // picks the rider up
+        moving.reachFloor(PARK_FLOOR + 1, arrived); // drops them off
+        arrived.clear();
+        return moving.takeStop();
+    }
+
+    @Benchmark
+    public ElevatorStatus process() {
+        return parked.process(arrived);
+    }
+}
@@ -1,116 +1,461 @@
 package elevatorsystem;
 
 import java.util.*;
-import java.util.logging.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Building {
-    private static final Logger LOGGER = Logger.getLogger(Building.class.getName());
-    private final Map<ElevatorStatus, TreeSet<Elevator>> statusToElevators = new HashMap<>();
+    private final ElevatorIndex index;
+    private final Fleet fleet;
+    private final BuildingMetrics metrics;
+    private final List<RequestListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong completed = new AtomicLong(); // requests completed since construction, never reset
+    private volatile BuildingJournal journal; // null unless the building's state is being persisted
+    private volatile DispatchStrategy strategy = new NearestCarStrategy();
+    private volatile DemandForecaster forecaster; // null unless idle cars are parked where calls are expected
     private final int minFloor;
     private final int maxFloor;
-    private static final Comparator<Elevator> comparator = new Comparator<Elevator>() {
+    private final String buildingID;
+    private final int eventSource;
+    private final SimulationClock clock;
+    private final ExecutionMode mode;
+    private final List<Elevator> cars = new ArrayList<>();
+    private final CountDownLatch terminated;
+    private boolean started = false;
+
+    // dispatch decisions and the pending queue are serialised by dispatchLock. elevators never wait for it: a status
+    // change only raises drainRequested, and whoever holds the lock drains on their behalf before letting go
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    private final AtomicBoolean drainRequested = new AtomicBoolean(false);
+    private final Deque<ElevatorRequest> pending = new ArrayDeque<>(); // requests no elevator could take yet
+    private final ConcurrentLinkedQueue<ElevatorRequest> overflow = new ConcurrentLinkedQueue<>(); // full cars left
+    private volatile int pendingSize = 0; // pending.size(), for readers that must not take the lock
+    private boolean draining = false;
+    private final Object assigned = new Object(); // moveFloors callers wait here for their request to be processed
+
+    // hall calls collected since the last flush, when batching is on
+    private volatile long batchWindow = 0;
+    private final ConcurrentLinkedQueue<ElevatorRequest> batch = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private static final Comparator<ElevatorRequest> byOrigin = new Comparator<ElevatorRequest>() {
         @Override
-        public int compare(Elevator o1, Elevator o2) {
-            if (o1.getCurrentFloor() != o2.getCurrentFloor()) {
-                return Integer.compare(o1.getCurrentFloor(), o2.getCurrentFloor());
+        public int compare(ElevatorRequest o1, ElevatorRequest o2) {
+            if (o1.getType() != o2.getType()) {
+                return o1.getType().compareTo(o2.getType());
             }
-            return o1.getID().compareTo(o2.getID());
+            return Integer.compare(o1.getFrom(), o2.getFrom());
         }
     };
-    private final String buildingID;
 
     public Building(String building_ID, List<String> elevators, int min_floor, int max_floor) {
+        this(building_ID, elevators, min_floor, max_floor, SimulationClock.realTime());
+    }
+
+    public Building(String building_ID, List<String> elevators, int min_floor, int max_floor, SimulationClock clock) {
+        this(building_ID, elevators, min_floor, max_floor, clock, ExecutionMode.THREAD_PER_ELEVATOR);
+    }
+
+    public Building(String building_ID, List<String> elevators, int min_floor, int max_floor, SimulationClock clock,
+                    ExecutionMode mode) {
         buildingID = building_ID;
+        eventSource = EventLog.source(building_ID);
+        this.clock = clock;
+        this.mode = mode;
+        terminated = new CountDownLatch(elevators.size());
         minFloor = min_floor;
         maxFloor = max_floor;
-        this.statusToElevators.put(ElevatorStatus.UP, new TreeSet<>(comparator));
-        this.statusToElevators.put(ElevatorStatus.DOWN, new TreeSet<>(comparator));
-        this.statusToElevators.put(ElevatorStatus.STATIONARY, new TreeSet<>(comparator));
-        elevators.forEach(ID -> {
-                Elevator e = new Elevator(ID, min_floor, this, false);
-                this.statusToElevators.get(ElevatorStatus.STATIONARY).add(e);
-        });
-        LoggerSetup.setUpLogger(LOGGER, Level.INFO);
-    }
-
-
-
-    synchronized void updateElevator(Elevator elevator) {
-        // add elevator to appropriate key
-        ElevatorStatus status = elevator.getCurrentStatus();
-        for (ElevatorStatus s : statusToElevators.keySet()) {
-            if (status.equals(s)) {
-                boolean notInSet = !statusToElevators.get(s).remove(elevator);
-                if (notInSet) {
-                    notifyAll(); // if there is a valid status change, notify requests
+        // slots follow ID order, so cars level with each other are picked by lowest ID
+        List<String> byID = new ArrayList<>(elevators);
+        Collections.sort(byID);
+        elevators.forEach(ID -> cars.add(new Elevator(ID, byID.indexOf(ID), min_floor, this)));
+        index = new ElevatorIndex(min_floor, max_floor, cars);
+        cars.forEach(index::place);
+        fleet = new Fleet(index, min_floor, max_floor);
+        metrics = new BuildingMetrics(this, fleet);
+    }
+
+    // elevators do not move until the building is started
+    public synchronized void start() {
+        if (started) {
+            throw new RuntimeException("Building " + buildingID + " already started");
+        }
+        started = true;
+        cars.forEach(e -> e.start(mode));
+        drainRequested.set(true); // restored pending requests
+        drainIfRequested();
+    }
+
+    // asks every elevator to stop after its current step. requests still queued are never completed
+    public void stop() {
+        cars.forEach(Elevator::stop);
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    // called once by each elevator when it stops. must not take the building monitor, elevators call it holding
+    // their own
+    void elevatorTerminated() {
+        terminated.countDown();
+    }
+
+
+
+    void updateElevator(Elevator elevator) {
+        if (index.place(elevator)) {
+            // if there is a valid status change, retry waiting requests
+            drainRequested.set(true);
+        }
+        drainIfRequested(); // also picks up callers a full car left behind
+    }
+
+    void requestProcessed(ElevatorRequest request) {
+        for (RequestListener listener : listeners) {
+            listener.processed(request);
+        }
+    }
+
+    void requestBoarded(ElevatorRequest request) {
+        BuildingJournal j = journal;
+        if (j != null) {
+            j.boarded(request);
+        }
+    }
+
+    void requestCompleted(ElevatorRequest request) {
+        completed.incrementAndGet();
+        BuildingJournal j = journal;
+        if (j != null) {
+            j.completed(request);
+        }
+        for (RequestListener listener : listeners) {
+            listener.completed(request);
+        }
+    }
+
+    // hands the request to an elevator, or queues it until one becomes available. never blocks the caller
+    public CompletableFuture<ElevatorRequest> submit(ElevatorRequest request) {
+        BuildingJournal j = journal;
+        if (j != null) {
+            j.submitted(request);
+        }
+        DemandForecaster f = forecaster;
+        if (f != null) {
+            f.record(request.getFrom(), clock.currentTimeMillis());
+        }
+        long window = batchWindow;
+        if (window > 0) {
+            batch.add(request);
+            if (flushScheduled.compareAndSet(false, true)) {
+                clock.schedule(this::flushBatch, window);
+            }
+            return request.whenCompleted();
+        }
+        dispatchLock.lock();
+        try {
+            if (!dispatch(request)) {
+                pending.addLast(request);
+                pendingSize = pending.size();
+            }
+        }
+        finally {
+            dispatchLock.unlock();
+        }
+        drainIfRequested();
+        return request.whenCompleted();
+    }
+
+    // blocks until the request has been given to an elevator
+    public void moveFloors(ElevatorRequest request) {
+        long start = clock.currentTimeMillis();
+        submit(request);
+        synchronized (assigned) {
+            try {
+                while (!request.isProcessed()) {
+                    clock.await(assigned, 0); // wait until elevator becomes available
                 }
-                statusToElevators.get(s).add(elevator);
             }
-            else {
-                statusToElevators.get(s).remove(elevator);
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
             }
         }
+        metrics.moveFloorsWait().record(clock.currentTimeMillis() - start);
     }
 
-    synchronized void removeElevatorFromService(Elevator elevator) {
-        statusToElevators.forEach( (e,elevators) -> elevators.remove(elevator));
+    // must hold dispatchLock
+    private boolean dispatch(ElevatorRequest request) {
+        int slot = select(request);
+        if (slot < 0) {
+            return false;
+        }
+        Elevator best = fleet.elevator(slot);
+        if (EventLog.ENABLED) {
+            EventLog.record(clock.currentTimeMillis(), EventLog.Type.DISPATCH, eventSource,
+                    request.getFrom(), request.getTo(), best.getEventSource());
+        }
+        request.process();
+        best.move(request);
+        return true;
     }
 
-    public synchronized void moveFloors(ElevatorRequest request) {
-        Elevator target = new Elevator("", request.getFrom(), this, true);
-        Elevator stationary = getClosestStationaryElevator(target);
-        Elevator moving = getClosestMovingElevator(target, request.getType());
+    // dispatches everything collected in the last window under one acquisition of the dispatch lock. calls from the
+    // same floor in the same direction make one group, which gets a single dispatch decision and a single car
+    private void flushBatch() {
+        flushScheduled.set(false); // calls arriving from here on start the next window
+        List<ElevatorRequest> calls = new ArrayList<>();
+        for (ElevatorRequest request = batch.poll(); request != null; request = batch.poll()) {
+            calls.add(request);
+        }
+        if (calls.isEmpty()) {
+            return;
+        }
+        calls.sort(byOrigin);
+        boolean dispatched = false;
+        dispatchLock.lock();
+        try {
+            int start = 0;
+            while (start < calls.size()) {
+                int end = start + 1;
+                while (end < calls.size() && byOrigin.compare(calls.get(start), calls.get(end)) == 0) {
+                    end++;
+                }
+                List<ElevatorRequest> group = calls.subList(start, end);
+                int sent = dispatch(group);
+                if (sent > 0) {
+                    dispatched = true;
+                }
+                if (sent < group.size()) {
+                    pending.addAll(group.subList(sent, group.size()));
+                    pendingSize = pending.size();
+                }
+                start = end;
+            }
+        }
+        finally {
+            dispatchLock.unlock();
+        }
+        drainIfRequested();
+        if (dispatched) {
+            synchronized (assigned) {
+                clock.signalAll(assigned);
+            }
+        }
+    }
 
-        Elevator best = getClosestElevator(stationary, moving, target);
+    // must hold dispatchLock. every request in group comes from the same floor going the same way. each car picked
+    // is given only as many as it has room for and the rest go to the next pick, so no car is promised more people
+    // than it can carry. returns how many from the front of group were dispatched, the others found no car
+    private int dispatch(List<ElevatorRequest> group) {
+        int sent = 0;
+        while (sent < group.size()) {
+            int slot = select(group.get(sent));
+            if (slot < 0) {
+                break;
+            }
+            Elevator best = fleet.elevator(slot);
+            ElevatorSnapshot car = best.snapshot();
+            int end = Math.min(group.size(), sent + Math.max(car.capacity() - car.queued(), 1));
+            List<ElevatorRequest> share = group.subList(sent, end);
+            if (EventLog.ENABLED) {
+                EventLog.record(clock.currentTimeMillis(), EventLog.Type.DISPATCH_GROUP, eventSource,
+                        share.size(), share.get(0).getFrom(), best.getEventSource());
+            }
+            share.forEach(ElevatorRequest::process);
+            best.moveAll(share);
+            sent = end;
+        }
+        return sent;
+    }
+
+    // must hold dispatchLock
+    private int select(ElevatorRequest request) {
+        long start = System.nanoTime();
+        int slot = strategy.select(fleet, request);
+        metrics.dispatchNanos().record(System.nanoTime() - start);
+        return slot;
+    }
+
+    private void drainIfRequested() {
+        // re-check after unlocking, a request may have been raised just before the holder let go
+        while (drainRequested.get() && dispatchLock.tryLock()) {
+            try {
+                if (drainRequested.getAndSet(false)) {
+                    drainPending();
+                }
+            }
+            finally {
+                dispatchLock.unlock();
+            }
+        }
+    }
+
+    // must hold dispatchLock
+    private void drainPending() {
+        if (draining) {
+            return; // dispatching moves elevators, which can report back here
+        }
+        draining = true;
         try {
-            if (best != null) {
-                LOGGER.info(String.format("Moving floors from %d to %d. Best elevator is %s",
-                        request.getFrom(), request.getTo(), best.getID()));
-                request.process();
-                best.move(request);
-            } else {
-                wait(); // wait until elevator becomes available, then try again
-                moveFloors(request);
+            List<ElevatorRequest> leftBehind = new ArrayList<>();
+            for (ElevatorRequest request = overflow.poll(); request != null; request = overflow.poll()) {
+                leftBehind.add(request);
+            }
+            for (int i = leftBehind.size() - 1; i >= 0; i--) {
+                pending.addFirst(leftBehind.get(i)); // they have waited longest
+            }
+            boolean dispatched = false;
+            for (Iterator<ElevatorRequest> it = pending.iterator(); it.hasNext(); ) {
+                ElevatorRequest request = it.next();
+                if (dispatch(request)) {
+                    it.remove();
+                    dispatched = true;
+                }
+            }
+            pendingSize = pending.size();
+            if (dispatched) {
+                synchronized (assigned) {
+                    clock.signalAll(assigned);
+                }
             }
         }
-        catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        finally {
+            draining = false;
         }
     }
 
-    public ElevatorRequest makeRequest(int from, int to) {
-        return new ElevatorRequest(from, to, this);
+    // requests waiting for a car. read without the dispatch lock, so it may be a moment out of date
+    public int pendingRequests() {
+        return pendingSize;
+    }
+
+    // passengers delivered since the building was made. unlike the ride histogram, a metrics reset leaves it alone
+    public long completedRequests() {
+        return completed.get();
     }
 
-    private Elevator getClosestMovingElevator(Elevator target, ElevatorStatus type) {
-        Elevator moving;
-        if (type == ElevatorStatus.UP) { //only elevators going up can take it
-            moving = statusToElevators.get(ElevatorStatus.UP).headSet(target, false).floor(target);
+    // where an idle car should go to wait for calls. called from the car's own step, holding no locks
+    ElevatorStatus park(Elevator elevator) {
+        DemandForecaster f = forecaster;
+        if (f == null) {
+            return ElevatorStatus.STATIONARY;
         }
-        else { // only elevators going down can take it
-            moving = statusToElevators.get(ElevatorStatus.DOWN).tailSet(target, false).ceiling(target);
+        int floor = f.parkingFloor(fleet, elevator.getSlot(), clock.currentTimeMillis());
+        return elevator.queue().park(floor);
+    }
+
+    // called by a car's queue holding its lock, so these only flag work for the next drain
+    void elevatorFullChanged(Elevator elevator, boolean full) {
+        index.setFull(elevator.getSlot(), full);
+        if (!full) {
+            drainRequested.set(true);
         }
-        return moving;
     }
 
-    private Elevator getClosestStationaryElevator(Elevator target) {
-        Elevator higher = statusToElevators.get(ElevatorStatus.STATIONARY).ceiling(target);
-        Elevator lower = statusToElevators.get(ElevatorStatus.STATIONARY).lower(target);
-        return getClosestElevator(higher, lower ,target);
+    void redispatch(List<ElevatorRequest> requests) {
+        overflow.addAll(requests);
+        drainRequested.set(true);
     }
 
-    private Elevator getClosestElevator(Elevator e1, Elevator e2, Elevator target) {
-        if (e1 != null && e2 != null) {
-            return Math.abs(e1.getCurrentFloor() - target.getCurrentFloor()) >
-                    Math.abs(e2.getCurrentFloor() - target.getCurrentFloor())? e2 : e1;
+    // journal hooks for the elevators, which call them from their own step or from a dispatcher holding the car's
+    // queue, so each car's records land in the order its state changed
+    void elevatorAssigned(Elevator elevator, ElevatorRequest request) {
+        BuildingJournal j = journal;
+        if (j != null) {
+            j.assigned(elevator.getSlot(), request);
         }
-        return e1 != null ? e1 : e2;
+    }
+
+    void elevatorMoved(Elevator elevator) {
+        BuildingJournal j = journal;
+        if (j != null) {
+            j.moved(elevator.getSlot(), elevator.getCurrentFloor(), elevator.getCurrentStatus());
+        }
+    }
+
+    // state read back by BuildingJournal.restore. only before start()
+    void restorePending(Collection<ElevatorRequest> requests) {
+        dispatchLock.lock();
+        try {
+            pending.addAll(requests);
+            pendingSize = pending.size();
+        }
+        finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    void attachJournal(BuildingJournal journal) {
+        this.journal = journal;
+    }
+
+    // where the building's state is persisted, or null
+    public BuildingJournal journal() {
+        return journal;
+    }
+
+    public ElevatorRequest makeRequest(int from, int to) {
+        return new ElevatorRequest(from, to, this);
+    }
+
+    // collects hall calls for window_millis and dispatches them together, see flushBatch. 0, the default,
+    // dispatches every call as it arrives
+    public void setBatchWindow(long window_millis) {
+        batchWindow = Math.max(window_millis, 0);
+    }
+
+    // most passengers each car takes at once, Elevator.default_capacity unless set
+    public void setCapacity(int passengers) {
+        cars.forEach(e -> e.queue().setCapacity(passengers));
+        drainRequested.set(true);
+        drainIfRequested();
+    }
+
+    // learns hall call demand from here on and sends idle cars to wait where calls are expected. null leaves idle
+    // cars where they stop
+    public void setDemandForecaster(DemandForecaster forecaster) {
+        this.forecaster = forecaster;
+    }
+
+    // takes effect from the next dispatch decision
+    public void setDispatchStrategy(DispatchStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public void addRequestListener(RequestListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeRequestListener(RequestListener listener) {
+        listeners.remove(listener);
+    }
+
+    public BuildingMetrics metrics() {
+        return metrics;
+    }
+
+    public Fleet fleet() {
+        return fleet;
     }
 
     public String getID() {
         return buildingID;
     }
 
+    public SimulationClock clock() {
+        return clock;
+    }
+
     public int minFloor() {
         return minFloor;
     }
@@ -0,0 +1,414 @@
+package elevatorsystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// persists a building's state so a restarted controller carries on with every queued call and every car where it
+// left off. the directory holds
+//   snapshot-N.bin  the whole state as of the start of journal segment N
+//   journal-N.log   fixed size memory-mapped segments of 32 byte records, appended as requests are submitted,
+//                   assigned, boarded and completed and as cars move
+// restore() loads the newest snapshot and replays only the segments after it. snapshot() folds closed segments
+// into a new snapshot and deletes them, without stopping the building
+public final class BuildingJournal implements Closeable {
+
+    private static final int MAGIC = 0x454c5653; // "ELVS"
+    private static final int VERSION = 1;
+    private static final int RECORD_BYTES = 32;
+    private static final int SEGMENT_BYTES = RECORD_BYTES * (1 << 18); // 262144 records, 8MB
+
+    // record types. 0 marks the unwritten end of a segment
+    private static final byte SUBMIT = 1;   // id, a = from, b = to, t1 = created
+    private static final byte ASSIGN = 2;   // slot, id, t1 = processed
+    private static final byte BOARD = 3;    // id, t1 = boarded
+    private static final byte COMPLETE = 4; // id
+    private static final byte MOVE = 5;     // slot, a = floor, b = status
+
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final Pattern NUMBERED = Pattern.compile("(snapshot|journal)-(\\d+)\\.(bin|bin\\.tmp|log)");
+    private static final ElevatorStatus[] STATUSES = ElevatorStatus.values();
+
+    private final Path dir;
+    private final Object compacting = new Object();
+    private long snapshotNumber; // guarded by compacting
+
+    // guarded by this
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private boolean closed = false;
+
+    private BuildingJournal(Path dir, long snapshot_number, long segment_number) throws IOException {
+        this.dir = dir;
+        this.snapshotNumber = snapshot_number;
+        openSegment(segment_number);
+    }
+
+    // a new building whose state is journalled to dir, which must not hold a journal already
+    public static Building create(Path dir, String building_ID, List<String> elevators, int min_floor, int max_floor,
+                                  SimulationClock clock, ExecutionMode mode) throws IOException {
+        Files.createDirectories(dir);
+        if (latestSnapshot(dir) >= 0) {
+            throw new RuntimeException(dir + " already holds a building journal");
+        }
+        Building building = new Building(building_ID, elevators, min_floor, max_floor, clock, mode);
+        writeSnapshot(dir, 0, State.of(building));
+        building.attachJournal(new BuildingJournal(dir, 0, 0));
+        return building;
+    }
+
+    // the building journalled to dir, with its cars, queues and pending calls as they were last recorded. it is not
+    // started, and goes on journalling to dir
+    public static Building restore(Path dir, SimulationClock clock, ExecutionMode mode) throws IOException {
+        long n = latestSnapshot(dir);
+        if (n < 0) {
+            throw new RuntimeException("No building journal in " + dir);
+        }
+        deleteBefore(dir, n);
+        State state = readSnapshot(dir, n);
+        long last = replay(dir, state, n, Long.MAX_VALUE);
+        Building building = new Building(state.buildingID, state.cars, state.minFloor, state.maxFloor, clock, mode);
+        ElevatorRequest.reserveIDs(state.lastID);
+        List<List<ElevatorRequest>> waiting = new ArrayList<>();
+        List<List<ElevatorRequest>> riding = new ArrayList<>();
+        for (int slot = 0; slot < state.cars.size(); slot++) {
+            waiting.add(new ArrayList<>());
+            riding.add(new ArrayList<>());
+        }
+        List<ElevatorRequest> pending = new ArrayList<>();
+        for (Entry e : state.requests.values()) {
+            ElevatorRequest request = new ElevatorRequest(e.id, e.from, e.to, e.createdAt, building);
+            if (e.slot < 0) {
+                pending.add(request);
+                continue;
+            }
+            request.restore(e.processedAt, e.boardedAt);
+            (e.boardedAt >= 0 ? riding : waiting).get(e.slot).add(request);
+        }
+        Fleet fleet = building.fleet();
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            fleet.elevator(slot).restore(state.floors[slot], STATUSES[state.statuses[slot]], waiting.get(slot),
+                    riding.get(slot));
+        }
+        building.restorePending(pending);
+        building.attachJournal(new BuildingJournal(dir, n, last + 1));
+        return building;
+    }
+
+    // folds every segment written so far into a new snapshot, so the next restore replays only what comes after.
+    // appends carry on into a fresh segment meanwhile
+    public void snapshot() throws IOException {
+        synchronized (compacting) {
+            long covered;
+            synchronized (this) {
+                if (closed) {
+                    throw new RuntimeException("Journal in " + dir + " is closed");
+                }
+                covered = segmentNumber;
+                nextSegment();
+            }
+            State state = readSnapshot(dir, snapshotNumber);
+            replay(dir, state, snapshotNumber, covered);
+            writeSnapshot(dir, covered + 1, state);
+            Files.deleteIfExists(dir.resolve(snapshotName(snapshotNumber)));
+            for (long k = snapshotNumber; k <= covered; k++) {
+                Files.deleteIfExists(dir.resolve(segmentName(k)));
+            }
+            snapshotNumber = covered + 1;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            segment.force();
+            channel.close();
+        }
+    }
+
+    void submitted(ElevatorRequest request) {
+        append(SUBMIT, -1, request.getID(), request.getFrom(), request.getTo(), request.getCreatedAt());
+    }
+
+    void assigned(int slot, ElevatorRequest request) {
+        append(ASSIGN, slot, request.getID(), 0, 0, request.getProcessedAt());
+    }
+
+    void boarded(ElevatorRequest request) {
+        append(BOARD, -1, request.getID(), 0, 0, request.getBoardedAt());
+    }
+
+    void completed(ElevatorRequest request) {
+        append(COMPLETE, -1, request.getID(), 0, 0, request.getCompletedAt());
+    }
+
+    void moved(int slot, int floor, ElevatorStatus status) {
+        append(MOVE, slot, 0, floor, status.ordinal(), 0);
+    }
+
+    private synchronized void append(byte type, int slot, long id, int a, int b, long t1) {
+        if (closed) {
+            return;
+        }
+        if (segment.remaining() < RECORD_BYTES) {
+            try {
+                nextSegment();
+            }
+            catch (IOException e) {
+                throw new RuntimeException("Could not start a new journal segment in " + dir, e);
+            }
+        }
+        int p = segment.position();
+        segment.putInt(p + 4, slot);
+        segment.putLong(p + 8, id);
+        segment.putInt(p + 16, a);
+        segment.putInt(p + 20, b);
+        segment.putLong(p + 24, t1);
+        segment.put(p, type); // last, so a record cut short reads as the end of the segment
+        segment.position(p + RECORD_BYTES);
+    }
+
+    // must hold this
+    private void nextSegment() throws IOException {
+        segment.force();
+        channel.close();
+        openSegment(segmentNumber + 1);
+    }
+
+    // must hold this, or be constructing
+    private void openSegment(long n) throws IOException {
+        channel = FileChannel.open(dir.resolve(segmentName(n)), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+        segmentNumber = n;
+    }
+
+    // applies segments from to to, stopping at the first one missing. returns the last one applied, or from - 1
+    private static long replay(Path dir, State state, long from, long to) throws IOException {
+        long k = from;
+        for (; k <= to; k++) {
+            Path path = dir.resolve(segmentName(k));
+            if (!Files.exists(path)) {
+                break;
+            }
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer records = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                for (int p = 0; p + RECORD_BYTES <= records.limit() && records.get(p) != 0; p += RECORD_BYTES) {
+                    state.apply(records.get(p), records.getInt(p + 4), records.getLong(p + 8),
+                            records.getInt(p + 16), records.getInt(p + 20), records.getLong(p + 24));
+                }
+            }
+        }
+        return k - 1;
+    }
+
+    // removes what a snapshot() cut short may have left: snapshots and segments older than snapshot n, which
+    // already covers them, and snapshots that were never finished
+    private static void deleteBefore(Path dir, long n) throws IOException {
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Matcher m = NUMBERED.matcher(file.getFileName().toString());
+                if (m.matches() && (m.group(3).endsWith(".tmp") || Long.parseLong(m.group(2)) < n)) {
+                    stale.add(file);
+                }
+            }
+        }
+        for (Path file : stale) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long latestSnapshot(Path dir) throws IOException {
+        long latest = -1;
+        if (!Files.isDirectory(dir)) {
+            return latest;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "snapshot-*.bin")) {
+            for (Path file : files) {
+                Matcher m = SNAPSHOT.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    latest = Math.max(latest, Long.parseLong(m.group(1)));
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static void writeSnapshot(Path dir, long n, State state) throws IOException {
+        byte[] id = state.buildingID.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> cars = new ArrayList<>();
+        int size = 4 + 4 + 4 + id.length + 4 + 4 + 4 + 8 + 4 + state.requests.size() * 44;
+        for (String car : state.cars) {
+            byte[] bytes = car.getBytes(StandardCharsets.UTF_8);
+            cars.add(bytes);
+            size += 4 + bytes.length + 4 + 1;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION);
+        out.putInt(id.length).put(id);
+        out.putInt(state.minFloor).putInt(state.maxFloor);
+        out.putInt(cars.size());
+        for (int slot = 0; slot < cars.size(); slot++) {
+            out.putInt(cars.get(slot).length).put(cars.get(slot));
+            out.putInt(state.floors[slot]).put(state.statuses[slot]);
+        }
+        out.putLong(state.lastID);
+        out.putInt(state.requests.size());
+        for (Entry e : state.requests.values()) {
+            out.putLong(e.id).putInt(e.from).putInt(e.to).putInt(e.slot);
+            out.putLong(e.createdAt).putLong(e.processedAt).putLong(e.boardedAt);
+        }
+        out.flip();
+        Path tmp = dir.resolve(snapshotName(n) + ".tmp");
+        try (FileChannel file = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                file.write(out);
+            }
+            file.force(true);
+        }
+        Files.move(tmp, dir.resolve(snapshotName(n)), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static State readSnapshot(Path dir, long n) throws IOException {
+        Path path = dir.resolve(snapshotName(n));
+        ByteBuffer in;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        }
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new RuntimeException(path + " is not a version " + VERSION + " building snapshot");
+        }
+        State state = new State();
+        state.buildingID = string(in);
+        state.minFloor = in.getInt();
+        state.maxFloor = in.getInt();
+        int cars = in.getInt();
+        state.floors = new int[cars];
+        state.statuses = new byte[cars];
+        for (int slot = 0; slot < cars; slot++) {
+            state.cars.add(string(in));
+            state.floors[slot] = in.getInt();
+            state.statuses[slot] = in.get();
+        }
+        state.lastID = in.getLong();
+        int requests = in.getInt();
+        for (int i = 0; i < requests; i++) {
+            Entry e = new Entry(in.getLong(), in.getInt(), in.getInt());
+            e.slot = in.getInt();
+            e.createdAt = in.getLong();
+            e.processedAt = in.getLong();
+            e.boardedAt = in.getLong();
+            state.requests.put(e.id, e);
+        }
+        return state;
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String snapshotName(long n) {
+        return String.format("snapshot-%012d.bin", n);
+    }
+
+    private static String segmentName(long n) {
+        return String.format("journal-%012d.log", n);
+    }
+
+    // a request as the journal knows it
+    private static final class Entry {
+        final long id;
+        final int from;
+        final int to;
+        int slot = -1; // car it was assigned to, -1 while pending
+        long createdAt;
+        long processedAt = -1;
+        long boardedAt = -1;
+
+        Entry(long id, int from, int to) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    // the building rebuilt from a snapshot and the records after it
+    private static final class State {
+        String buildingID;
+        int minFloor;
+        int maxFloor;
+        final List<String> cars = new ArrayList<>(); // in slot order
+        int[] floors;
+        byte[] statuses;
+        long lastID = 0;
+        final Map<Long, Entry> requests = new LinkedHashMap<>(); // in submission order, so pending calls keep theirs
+
+        static State of(Building building) {
+            Fleet fleet = building.fleet();
+            State state = new State();
+            state.buildingID = building.getID();
+            state.minFloor = building.minFloor();
+            state.maxFloor = building.maxFloor();
+            state.floors = new int[fleet.size()];
+            state.statuses = new byte[fleet.size()];
+            for (int slot = 0; slot < fleet.size(); slot++) {
+                state.cars.add(fleet.id(slot));
+                state.floors[slot] = fleet.floor(slot);
+                state.statuses[slot] = (byte) fleet.status(slot).ordinal();
+            }
+            return state;
+        }
+
+        void apply(byte type, int slot, long id, int a, int b, long t1) {
+            Entry e;
+            switch (type) {
+                case SUBMIT:
+                    e = new Entry(id, a, b);
+                    e.createdAt = t1;
+                    requests.put(id, e);
+                    lastID = Math.max(lastID, id);
+                    break;
+                case ASSIGN:
+                    e = requests.get(id);
+                    if (e != null) {
+                        e.slot = slot;
+                        e.processedAt = t1;
+                    }
+                    break;
+                case BOARD:
+                    e = requests.get(id);
+                    if (e != null) {
+                        e.boardedAt = t1;
+                    }
+                    break;
+                case COMPLETE:
+                    requests.remove(id);
+                    break;
+                case MOVE:
+                    floors[slot] = a;
+                    statuses[slot] = (byte) b;
+                    break;
+                default:
+                    throw new RuntimeException("Unknown journal record type " + type);
+            }
+        }
+    }
+}
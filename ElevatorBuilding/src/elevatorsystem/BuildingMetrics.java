@@ -0,0 +1,160 @@
+package elevatorsystem;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// per building latency histograms and per car gauges. times come from the building's clock, so under a
+// VirtualClock they are simulated milliseconds, except dispatch decisions, which are real nanoseconds of CPU
+public final class BuildingMetrics implements BuildingMetricsMXBean {
+
+    private static final ElevatorStatus[] STATUSES = ElevatorStatus.values();
+
+    private final Building building;
+    private final Fleet fleet;
+    private final Histogram hallWait = new Histogram();       // hall call to boarding
+    private final Histogram ride = new Histogram();           // boarding to arrival
+    private final Histogram dispatch = new Histogram();       // one strategy decision, nanoseconds
+    private final Histogram moveFloorsWait = new Histogram(); // moveFloors blocked waiting for a car
+    private final AtomicLongArray statusMillis;               // slot * STATUSES.length + status, finished intervals
+
+    BuildingMetrics(Building building, Fleet fleet) {
+        this.building = building;
+        this.fleet = fleet;
+        statusMillis = new AtomicLongArray(fleet.size() * STATUSES.length);
+    }
+
+    public Histogram hallWait() {
+        return hallWait;
+    }
+
+    public Histogram ride() {
+        return ride;
+    }
+
+    public Histogram dispatchNanos() {
+        return dispatch;
+    }
+
+    public Histogram moveFloorsWait() {
+        return moveFloorsWait;
+    }
+
+    public int queueDepth(int slot) {
+        return fleet.queuedRequests(slot);
+    }
+
+    // time the car has spent in status, including the stretch it is in now
+    public long statusMillis(int slot, ElevatorStatus status) {
+        Elevator e = fleet.elevator(slot);
+        long since = e.getStatusSince();
+        long millis = statusMillis.get(slot * STATUSES.length + status.ordinal());
+        if (e.getCurrentStatus() == status) {
+            millis += Math.max(building.clock().currentTimeMillis() - since, 0);
+        }
+        return millis;
+    }
+
+    void requestCompleted(ElevatorRequest request) {
+        hallWait.record(request.getBoardedAt() - request.getCreatedAt());
+        ride.record(request.getCompletedAt() - request.getBoardedAt());
+    }
+
+    void statusLeft(int slot, ElevatorStatus status, long millis) {
+        statusMillis.addAndGet(slot * STATUSES.length + status.ordinal(), millis);
+    }
+
+    // registers under elevatorsystem:type=Building,name=<building ID> on the platform MBean server
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName());
+        }
+        catch (JMException e) {
+            throw new RuntimeException("Could not register metrics for building " + building.getID(), e);
+        }
+    }
+
+    public void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName());
+        }
+        catch (JMException e) {
+            throw new RuntimeException("Could not unregister metrics for building " + building.getID(), e);
+        }
+    }
+
+    private ObjectName objectName() throws JMException {
+        return new ObjectName("elevatorsystem:type=Building,name=" + ObjectName.quote(building.getID()));
+    }
+
+    @Override
+    public Map<String, Long> getHallWaitMillis() {
+        return summary(hallWait);
+    }
+
+    @Override
+    public Map<String, Long> getRideMillis() {
+        return summary(ride);
+    }
+
+    @Override
+    public Map<String, Long> getDispatchNanos() {
+        return summary(dispatch);
+    }
+
+    @Override
+    public Map<String, Long> getMoveFloorsWaitMillis() {
+        return summary(moveFloorsWait);
+    }
+
+    @Override
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            depths.put(fleet.id(slot), queueDepth(slot));
+        }
+        return depths;
+    }
+
+    @Override
+    public Map<String, Long> getStatusMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            for (ElevatorStatus status : STATUSES) {
+                millis.put(fleet.id(slot) + " " + status, statusMillis(slot, status));
+            }
+        }
+        return millis;
+    }
+
+    @Override
+    public int getPendingRequests() {
+        return building.pendingRequests();
+    }
+
+    @Override
+    public void reset() {
+        hallWait.reset();
+        ride.reset();
+        dispatch.reset();
+        moveFloorsWait.reset();
+        for (int i = 0; i < statusMillis.length(); i++) {
+            statusMillis.set(i, 0);
+        }
+    }
+
+    private static Map<String, Long> summary(Histogram histogram) {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.count());
+        summary.put("mean", Math.round(histogram.mean()));
+        summary.put("p50", histogram.percentile(50));
+        summary.put("p90", histogram.percentile(90));
+        summary.put("p99", histogram.percentile(99));
+        summary.put("p999", histogram.percentile(99.9));
+        summary.put("max", histogram.max());
+        return summary;
+    }
+}
@@ -0,0 +1,25 @@
+package elevatorsystem;
+
+import java.util.Map;
+
+// what BuildingMetrics exposes over JMX. histograms are summarised as count, mean, p50, p90, p99, p999 and max
+public interface BuildingMetricsMXBean {
+
+    Map<String, Long> getHallWaitMillis();
+
+    Map<String, Long> getRideMillis();
+
+    Map<String, Long> getDispatchNanos();
+
+    Map<String, Long> getMoveFloorsWaitMillis();
+
+    // per car ID
+    Map<String, Integer> getQueueDepths();
+
+    // per "car ID status", time spent in that status
+    Map<String, Long> getStatusMillis();
+
+    int getPendingRequests();
+
+    void reset();
+}
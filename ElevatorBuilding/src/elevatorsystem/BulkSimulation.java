@@ -0,0 +1,577 @@
+package elevatorsystem;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// a whole fleet simulated in flat arrays instead of one Elevator, thread and queue per car, so tens of thousands of
+// cars fit in one JVM for capacity planning. state is kept by column: floor, status, next step time and request
+// counts per car, the queue's stop bitsets a few words per car, and passengers as a pool of ids linked through an
+// int array like the queue's intrusive lists. time jumps from one millisecond where something happens to the next,
+// a call arriving or a car due to step. the cars are split into chunks, and at each such time every chunk with a
+// car due steps in one pass over its arrays, chunks in parallel, then new calls and calls full cars left behind are
+// dispatched on the calling thread. cars step as Elevator.step and the queue's LOOK rules do, and dispatch is the
+// building's with NearestCarStrategy on an ElevatorIndex of its own, so a run can be checked against a Building on
+// a VirtualClock playing the same traffic. the differences: cars due at the same millisecond all step before the
+// drain a building runs after each one, and idle cars are not parked
+public class BulkSimulation {
+
+    static final int cars_per_task = 1024;
+
+    private static final long IDLE = Long.MAX_VALUE; // nextStep of a car with nothing to do until it gets a call
+    private static final int NONE = -1;
+    private static final ElevatorStatus[] STATUSES = ElevatorStatus.values();
+    private static final byte UP = (byte) ElevatorStatus.UP.ordinal();
+    private static final byte DOWN = (byte) ElevatorStatus.DOWN.ordinal();
+    private static final byte STATIONARY = (byte) ElevatorStatus.STATIONARY.ordinal();
+
+    private final int minFloor;
+    private final int maxFloor;
+    private final int floors;
+    private final int words; // longs per car in each stop bitset
+    private final int cars;
+    private final int chunks;
+    private final ForkJoinPool pool;
+    private final ElevatorIndex index;
+    private int capacity = Elevator.default_capacity;
+    private boolean ran = false;
+    private long now = 0;
+
+    // per car
+    private final int[] floor;
+    private final byte[] status;
+    private final long[] nextStep;  // clock time of the car's next step, or IDLE
+    private final int[] queued;     // calls waiting to be picked up plus riders, counted against capacity
+    private final int[] riders;
+    private final boolean[] full;
+    // per car, words longs each: floors riders get off at, floors with calls going up and going down
+    private final long[] dropOffs;
+    private final long[] upCalls;
+    private final long[] downCalls;
+    // per car, one list head per floor: riders by destination, calls by origin. NONE if empty
+    private final int[] riding;
+    private final int[] waitingUp;
+    private final int[] waitingDown;
+
+    // per chunk of cars, written only by the task stepping that chunk
+    private final int[] freedFirst; // passengers who arrived, linked through next
+    private final int[] freedLast;
+    private final int[] leftFirst;  // passengers a full car could not take, in the order it met them
+    private final int[] leftLast;
+    private final long[] arrived;   // passengers let off since the last step
+    private final boolean[] moved;  // a car was filed somewhere new in the index or has room again
+    private final long[] earliest;  // first nextStep in the chunk
+    private final Histogram.Tally[] hallWaits; // folded into hallWait and ride when the run ends
+    private final Histogram.Tally[] rides;
+    private final int[] dueChunks;  // chunks stepping now
+
+    // passengers by id. the pool only grows between steps, never while cars are stepping
+    private int[] from = new int[1024];
+    private int[] to = new int[1024];
+    private int[] next = new int[1024];
+    private long[] createdAt = new long[1024];
+    private long[] boardedAt = new long[1024];
+    private int free = NONE;
+
+    // dispatch state, only touched between steps
+    private int[] pending = new int[256]; // calls no car could take yet, oldest first
+    private int pendingSize = 0;
+    private int overflowFirst = NONE;     // calls full cars left behind since the last drain
+    private int overflowLast = NONE;
+    private boolean drainRequested = false;
+    private final boolean[] noCar;        // by floor and direction, calls no car could take in this drain
+    private long due = IDLE;              // first nextStep of any car
+    private long delivered = 0;
+
+    private final Histogram hallWait = new Histogram();
+    private final Histogram ride = new Histogram();
+    private final Histogram dispatchNanos = new Histogram();
+
+    public BulkSimulation(int cars, int min_floor, int max_floor) {
+        this(cars, min_floor, max_floor, ForkJoinPool.commonPool());
+    }
+
+    public BulkSimulation(int cars, int min_floor, int max_floor, ForkJoinPool pool) {
+        if (cars < 1 || max_floor <= min_floor) {
+            throw new RuntimeException("Simulation needs cars and at least two floors: " + cars + " cars, "
+                    + min_floor + " to " + max_floor);
+        }
+        minFloor = min_floor;
+        maxFloor = max_floor;
+        floors = max_floor - min_floor + 1;
+        words = (floors + 63) >>> 6;
+        this.cars = cars;
+        chunks = (cars + cars_per_task - 1) / cars_per_task;
+        this.pool = pool;
+        noCar = new boolean[floors * 2];
+        index = new ElevatorIndex(min_floor, max_floor, cars);
+        floor = new int[cars];
+        status = new byte[cars];
+        nextStep = new long[cars];
+        queued = new int[cars];
+        riders = new int[cars];
+        full = new boolean[cars];
+        dropOffs = new long[cars * words];
+        upCalls = new long[cars * words];
+        downCalls = new long[cars * words];
+        riding = new int[cars * floors];
+        waitingUp = new int[cars * floors];
+        waitingDown = new int[cars * floors];
+        Arrays.fill(riding, NONE);
+        Arrays.fill(waitingUp, NONE);
+        Arrays.fill(waitingDown, NONE);
+        freedFirst = new int[chunks];
+        freedLast = new int[chunks];
+        leftFirst = new int[chunks];
+        leftLast = new int[chunks];
+        arrived = new long[chunks];
+        moved = new boolean[chunks];
+        earliest = new long[chunks];
+        hallWaits = new Histogram.Tally[chunks];
+        rides = new Histogram.Tally[chunks];
+        dueChunks = new int[chunks];
+        for (int k = 0; k < chunks; k++) {
+            hallWaits[k] = new Histogram.Tally();
+            rides[k] = new Histogram.Tally();
+        }
+        Arrays.fill(freedFirst, NONE);
+        Arrays.fill(freedLast, NONE);
+        Arrays.fill(leftFirst, NONE);
+        Arrays.fill(leftLast, NONE);
+        // every car starts idle at the bottom, as a building's do
+        Arrays.fill(floor, min_floor);
+        Arrays.fill(status, STATIONARY);
+        Arrays.fill(nextStep, IDLE);
+        Arrays.fill(earliest, IDLE);
+        for (int c = 0; c < cars; c++) {
+            index.place(c, ElevatorStatus.STATIONARY, min_floor);
+        }
+        grow(0);
+    }
+
+    // most passengers each car takes at once, Elevator.default_capacity unless set. only before run
+    public void setCapacity(int passengers) {
+        if (passengers < 1) {
+            throw new RuntimeException("Capacity must be at least 1: " + passengers);
+        }
+        capacity = passengers;
+    }
+
+    // plays the whole source through the fleet and returns what a LoadGenerator would report for a building. times
+    // are simulated milliseconds from the start. a simulation runs once
+    public LoadReport run(TrafficSource source) throws IOException {
+        if (ran) {
+            throw new RuntimeException("Simulation already run");
+        }
+        ran = true;
+        long trips = 0;
+        long skipped = 0;
+        long accepted = 0;
+        long wallStart = System.nanoTime();
+        try {
+            Trip trip = source.next();
+            while (true) {
+                for (; trip != null && trip.getTime() <= now; trip = source.next()) {
+                    trips++;
+                    int f = clamp(trip.getFrom());
+                    int t = clamp(trip.getTo());
+                    if (f == t) {
+                        skipped++; // a trip that starts and ends on the same floor of this building
+                        continue;
+                    }
+                    accepted++;
+                    submit(f, t, trip.getTime());
+                }
+                drainIfRequested();
+                // a car given a call steps at once, as a woken car does
+                while (due <= now) {
+                    step();
+                    drainIfRequested();
+                }
+                if (trip == null && delivered == accepted) {
+                    break;
+                }
+                long arrival = trip == null ? IDLE : trip.getTime();
+                if (due == IDLE && arrival == IDLE) {
+                    throw new RuntimeException("Simulation stalled with " + (accepted - delivered)
+                            + " passengers undelivered");
+                }
+                now = Math.min(due, arrival);
+            }
+            for (int k = 0; k < chunks; k++) {
+                hallWait.addAll(hallWaits[k]);
+                ride.addAll(rides[k]);
+            }
+            return new LoadReport(trips, skipped, now, System.nanoTime() - wallStart, hallWait, ride, dispatchNanos);
+        }
+        finally {
+            source.close();
+        }
+    }
+
+    public int cars() {
+        return cars;
+    }
+
+    // calls no car could take yet
+    public int pendingRequests() {
+        return pendingSize;
+    }
+
+    private int clamp(int floor) {
+        return floor < minFloor ? minFloor : floor > maxFloor ? maxFloor : floor;
+    }
+
+    private void submit(int f, int t, long created_at) {
+        if (free == NONE) {
+            grow(from.length);
+        }
+        int p = free;
+        free = next[p];
+        from[p] = f;
+        to[p] = t;
+        next[p] = NONE;
+        createdAt[p] = created_at;
+        boardedAt[p] = -1;
+        if (!dispatch(p)) {
+            if (pendingSize == pending.length) {
+                pending = Arrays.copyOf(pending, pendingSize * 2);
+            }
+            pending[pendingSize++] = p;
+        }
+    }
+
+    // adds ids from old_size up to the new size to the free list
+    private void grow(int old_size) {
+        int size = Math.max(old_size * 2, from.length);
+        if (size > from.length) {
+            from = Arrays.copyOf(from, size);
+            to = Arrays.copyOf(to, size);
+            next = Arrays.copyOf(next, size);
+            createdAt = Arrays.copyOf(createdAt, size);
+            boardedAt = Arrays.copyOf(boardedAt, size);
+        }
+        for (int p = size - 1; p >= old_size; p--) {
+            next[p] = free;
+            free = p;
+        }
+    }
+
+    // as Building.dispatch with NearestCarStrategy
+    private boolean dispatch(int p) {
+        long start = System.nanoTime();
+        int c = index.nearest(from[p], to[p] > from[p] ? ElevatorStatus.UP : ElevatorStatus.DOWN);
+        dispatchNanos.record(System.nanoTime() - start);
+        if (c < 0) {
+            return false;
+        }
+        int i = from[p] - minFloor;
+        int[] heads = to[p] > from[p] ? waitingUp : waitingDown;
+        next[p] = heads[c * floors + i];
+        heads[c * floors + i] = p;
+        (to[p] > from[p] ? upCalls : downCalls)[c * words + (i >>> 6)] |= 1L << i;
+        queued[c]++;
+        loadChanged(c);
+        if (nextStep[c] == IDLE) {
+            nextStep[c] = now; // wakes the car
+            earliest[c / cars_per_task] = now;
+            due = now;
+        }
+        return true;
+    }
+
+    // as Building.drainPending: calls full cars left behind go first, they have waited longest
+    private void drainIfRequested() {
+        while (drainRequested) {
+            drainRequested = false;
+            int leftBehind = 0;
+            for (int p = overflowFirst; p != NONE; p = next[p]) {
+                leftBehind++;
+            }
+            if (pendingSize + leftBehind > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingSize + leftBehind));
+            }
+            System.arraycopy(pending, 0, pending, leftBehind, pendingSize);
+            int n = 0;
+            for (int p = overflowFirst; p != NONE; ) {
+                int following = next[p];
+                next[p] = NONE;
+                pending[n++] = p;
+                p = following;
+            }
+            overflowFirst = NONE;
+            overflowLast = NONE;
+            pendingSize += leftBehind;
+            // a dispatch only ever takes room away, so once a call from a floor going one way finds no car, none of
+            // the calls after it from there going that way will either
+            Arrays.fill(noCar, false);
+            int kept = 0;
+            for (int k = 0; k < pendingSize; k++) {
+                int p = pending[k];
+                int way = (from[p] - minFloor) * 2 + (to[p] > from[p] ? 1 : 0);
+                if (noCar[way] || !dispatch(p)) {
+                    noCar[way] = true;
+                    pending[kept++] = p;
+                }
+            }
+            pendingSize = kept;
+        }
+    }
+
+    // steps every car that is due, then collects what the chunks left for the dispatcher
+    private void step() {
+        int n = 0;
+        for (int k = 0; k < chunks; k++) {
+            if (earliest[k] <= now) {
+                dueChunks[n++] = k;
+            }
+        }
+        if (n == 1) {
+            stepChunk(dueChunks[0]); // not worth handing over
+        }
+        else {
+            pool.invoke(new Steps(0, n));
+        }
+        due = IDLE;
+        for (int k = 0; k < chunks; k++) {
+            due = Math.min(due, earliest[k]);
+            if (moved[k]) {
+                moved[k] = false;
+                drainRequested = true;
+            }
+            delivered += arrived[k];
+            arrived[k] = 0;
+            if (freedFirst[k] != NONE) {
+                next[freedLast[k]] = free;
+                free = freedFirst[k];
+                freedFirst[k] = NONE;
+                freedLast[k] = NONE;
+            }
+            if (leftFirst[k] != NONE) {
+                if (overflowLast == NONE) {
+                    overflowFirst = leftFirst[k];
+                }
+                else {
+                    next[overflowLast] = leftFirst[k];
+                }
+                overflowLast = leftLast[k];
+                leftFirst[k] = NONE;
+                leftLast[k] = NONE;
+                drainRequested = true;
+            }
+        }
+    }
+
+    private void stepChunk(int k) {
+        int last = Math.min(cars, (k + 1) * cars_per_task);
+        long first = IDLE;
+        for (int c = k * cars_per_task; c < last; c++) {
+            if (nextStep[c] <= now) {
+                nextStep[c] = step(c, k);
+            }
+            first = Math.min(first, nextStep[c]);
+        }
+        earliest[k] = first;
+    }
+
+    // as Elevator.step. returns when the car next steps, or IDLE
+    private long step(int c, int k) {
+        boolean stop;
+        if (status[c] == STATIONARY) {
+            stop = process(c, k);
+        }
+        else {
+            boolean up = status[c] == UP;
+            int f = floor[c] + (up ? 1 : -1);
+            if (f > maxFloor || f < minFloor) {
+                throw new RuntimeException("Out of bounds floor: " + f);
+            }
+            floor[c] = f;
+            stop = reachFloor(c, k, up);
+        }
+        boolean roomAgain = loadChanged(c);
+        if (index.place(c, STATUSES[status[c]], floor[c]) || roomAgain) {
+            moved[k] = true;
+        }
+        long delay = stop ? Elevator.milliseconds_opening_closing_doors : 0;
+        if (status[c] != STATIONARY) {
+            delay += Elevator.milliseconds_between_floors;
+        }
+        else if (delay == 0) {
+            return IDLE;
+        }
+        return now + delay;
+    }
+
+    // as the queue's reachFloor. returns whether the doors opened
+    private boolean reachFloor(int c, int k, boolean up) {
+        int i = floor[c] - minFloor;
+        boolean stop = complete(c, k, i);
+        stop = board(c, k, i, up) || stop;
+        if (next(c, i, up ? 1 : -1, true) == NONE) {
+            // last stop this way, turn round
+            stop = board(c, k, i, !up) || stop;
+            status[c] = next(c, i, up ? -1 : 1, true) == NONE ? STATIONARY : up ? DOWN : UP;
+        }
+        return stop;
+    }
+
+    // as the queue's process. returns whether the doors opened
+    private boolean process(int c, int k) {
+        int i = floor[c] - minFloor;
+        boolean stop = complete(c, k, i);
+        if (riders[c] > 0) {
+            status[c] = next(c, i, 1, false) != NONE ? UP : DOWN;
+        }
+        else if (has(upCalls, c, i) || has(downCalls, c, i)) {
+            boolean up = has(upCalls, c, i);
+            stop = board(c, k, i, up) || stop;
+            status[c] = up ? UP : DOWN;
+        }
+        else {
+            int above = next(c, i, 1, true);
+            int below = next(c, i, -1, true);
+            if (above == NONE && below == NONE) {
+                status[c] = STATIONARY;
+            }
+            else {
+                status[c] = below == NONE || (above != NONE && above - i <= i - below) ? UP : DOWN;
+            }
+        }
+        return stop;
+    }
+
+    // lets off everyone going to floor i. returns whether there was anyone
+    private boolean complete(int c, int k, int i) {
+        if (!take(dropOffs, c, i)) {
+            return false;
+        }
+        int p = riding[c * floors + i];
+        riding[c * floors + i] = NONE;
+        while (p != NONE) {
+            int following = next[p];
+            hallWaits[k].record(boardedAt[p] - createdAt[p]);
+            rides[k].record(now - boardedAt[p]);
+            arrived[k]++;
+            riders[c]--;
+            queued[c]--;
+            next[p] = freedFirst[k];
+            if (freedFirst[k] == NONE) {
+                freedLast[k] = p;
+            }
+            freedFirst[k] = p;
+            p = following;
+        }
+        return true;
+    }
+
+    // as the queue's board: takes everyone waiting at floor i going up, or down, while there is room. the rest are
+    // left for the dispatcher. returns whether there was anyone
+    private boolean board(int c, int k, int i, boolean up) {
+        if (!take(up ? upCalls : downCalls, c, i)) {
+            return false;
+        }
+        int[] heads = up ? waitingUp : waitingDown;
+        int p = heads[c * floors + i];
+        heads[c * floors + i] = NONE;
+        while (p != NONE) {
+            int following = next[p];
+            if (riders[c] < capacity) {
+                int j = to[p] - minFloor;
+                next[p] = riding[c * floors + j];
+                riding[c * floors + j] = p;
+                dropOffs[c * words + (j >>> 6)] |= 1L << j;
+                riders[c]++;
+                boardedAt[p] = now;
+            }
+            else {
+                queued[c]--;
+                next[p] = NONE;
+                if (leftLast[k] == NONE) {
+                    leftFirst[k] = p;
+                }
+                else {
+                    next[leftLast[k]] = p;
+                }
+                leftLast[k] = p;
+            }
+            p = following;
+        }
+        return true;
+    }
+
+    // as the queue's loadChanged, filing the car as full or not in the index. returns true if it has room again
+    private boolean loadChanged(int c) {
+        boolean nowFull = queued[c] >= capacity;
+        if (nowFull == full[c]) {
+            return false;
+        }
+        full[c] = nowFull;
+        index.setFull(c, nowFull);
+        return !nowFull;
+    }
+
+    // closest floor past i going way dir where car c lets anyone off, or picks anyone up too if calls is set. NONE
+    // if there is none
+    private int next(int c, int i, int dir, boolean calls) {
+        int j = i + dir;
+        if (j < 0 || j >= floors) {
+            return NONE;
+        }
+        int base = c * words;
+        int w = j >>> 6;
+        long word = (dir > 0 ? -1L << j : -1L >>> (63 - (j & 63))) & stops(base + w, calls);
+        while (word == 0) {
+            w += dir;
+            if (w < 0 || w == words) {
+                return NONE;
+            }
+            word = stops(base + w, calls);
+        }
+        return (w << 6) + (dir > 0 ? Long.numberOfTrailingZeros(word) : 63 - Long.numberOfLeadingZeros(word));
+    }
+
+    private long stops(int w, boolean calls) {
+        return calls ? dropOffs[w] | upCalls[w] | downCalls[w] : dropOffs[w];
+    }
+
+    private boolean has(long[] bits, int c, int i) {
+        return (bits[c * words + (i >>> 6)] & (1L << i)) != 0;
+    }
+
+    private boolean take(long[] bits, int c, int i) {
+        int w = c * words + (i >>> 6);
+        long bit = 1L << i;
+        boolean had = (bits[w] & bit) != 0;
+        bits[w] &= ~bit;
+        return had;
+    }
+
+    // steps dueChunks first up to last, one task per chunk
+    private final class Steps extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int first;
+        private final int last;
+
+        Steps(int first, int last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                stepChunk(dueChunks[first]);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            Steps upper = new Steps(middle, last);
+            upper.fork();
+            new Steps(first, middle).compute();
+            upper.join();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package elevatorsystem;
+
+import java.util.Arrays;
+
+// hall calls waiting for one car in one direction, by the floor they are made from. like ElevatorMap, one intrusive
+// list per floor plus a bitset of floors with calls, so the planner finds the next stop either way with a few
+// word scans. a row of destination bits per floor records where the people waiting there are going
+class CallMap {
+
+    static final int NONE_ABOVE = Integer.MAX_VALUE;
+    static final int NONE_BELOW = Integer.MIN_VALUE;
+
+    private final int minFloor;
+    private final ElevatorRequest[] heads;
+    private final long[] floors;
+    private final long[] destinations; // floors.length words per floor
+
+    private int numberOfRequests = 0;
+
+    CallMap(int min_floor, int max_floor) {
+        minFloor = min_floor;
+        heads = new ElevatorRequest[max_floor - min_floor + 1];
+        floors = new long[(heads.length + 63) >>> 6];
+        destinations = new long[heads.length * floors.length];
+    }
+
+    void add(ElevatorRequest request) {
+        int i = request.getFrom() - minFloor;
+        request.next = heads[i];
+        heads[i] = request;
+        floors[i >>> 6] |= 1L << i;
+        int j = request.getTo() - minFloor;
+        destinations[i * floors.length + (j >>> 6)] |= 1L << j;
+        numberOfRequests++;
+    }
+
+    boolean hasCall(int floor) {
+        int i = floor - minFloor;
+        return i >= 0 && i < heads.length && (floors[i >>> 6] & (1L << i)) != 0;
+    }
+
+    // removes and returns every call from floor, linked through next, or null if there are none
+    ElevatorRequest take(int floor) {
+        if (!hasCall(floor)) {
+            return null;
+        }
+        int i = floor - minFloor;
+        ElevatorRequest first = heads[i];
+        heads[i] = null;
+        floors[i >>> 6] &= ~(1L << i);
+        Arrays.fill(destinations, i * floors.length, (i + 1) * floors.length, 0);
+        for (ElevatorRequest request = first; request != null; request = request.next) {
+            numberOfRequests--;
+        }
+        return first;
+    }
+
+    // lowest floor with a call above floor, or NONE_ABOVE
+    int nextAbove(int floor) {
+        int i = Math.max(floor - minFloor + 1, 0);
+        if (i >= heads.length) {
+            return NONE_ABOVE;
+        }
+        int w = i >>> 6;
+        long word = floors[w] & (-1L << i);
+        while (word == 0) {
+            if (++w == floors.length) {
+                return NONE_ABOVE;
+            }
+            word = floors[w];
+        }
+        return minFloor + (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    // highest floor with a call below floor, or NONE_BELOW
+    int nextBelow(int floor) {
+        int i = Math.min(floor - minFloor - 1, heads.length - 1);
+        if (i < 0) {
+            return NONE_BELOW;
+        }
+        int w = i >>> 6;
+        long word = floors[w] & (-1L >>> (63 - (i & 63)));
+        while (word == 0) {
+            if (--w < 0) {
+                return NONE_BELOW;
+            }
+            word = floors[w];
+        }
+        return minFloor + (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    // lowest and highest call floors, or fallback when it is further out or there are none
+    int lowestFloor(int fallback) {
+        for (int w = 0; w < floors.length; w++) {
+            if (floors[w] != 0) {
+                return Math.min(fallback, minFloor + (w << 6) + Long.numberOfTrailingZeros(floors[w]));
+            }
+        }
+        return fallback;
+    }
+
+    int highestFloor(int fallback) {
+        for (int w = floors.length - 1; w >= 0; w--) {
+            if (floors[w] != 0) {
+                return Math.max(fallback, minFloor + (w << 6) + 63 - Long.numberOfLeadingZeros(floors[w]));
+            }
+        }
+        return fallback;
+    }
+
+    // every floor anyone waiting is going to, bit i for floor minFloor + i
+    long[] copyAllDestinations() {
+        long[] bits = new long[floors.length];
+        for (int w = 0; w < floors.length; w++) {
+            for (long word = floors[w]; word != 0; word &= word - 1) {
+                int row = ((w << 6) + Long.numberOfTrailingZeros(word)) * floors.length;
+                for (int d = 0; d < floors.length; d++) {
+                    bits[d] |= destinations[row + d];
+                }
+            }
+        }
+        return bits;
+    }
+
+    // the floor bitset, bit i for floor minFloor + i
+    long[] copyFloors() {
+        return floors.clone();
+    }
+
+    // the destination rows: bit j of row i is set if anyone waiting at floor minFloor + i goes to minFloor + j
+    long[] copyDestinations() {
+        return destinations.clone();
+    }
+
+    boolean isEmpty() {
+        return numberOfRequests == 0;
+    }
+
+    int size() {
+        return numberOfRequests;
+    }
+}
@@ -0,0 +1,99 @@
+package elevatorsystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+// many buildings under one roof. every building is its own dispatch partition, with its own lock, pending queue
+// and index, so calls for different buildings are dispatched in parallel on the callers' threads and never
+// contend. routing by building ID is a single concurrent map lookup
+public class Campus {
+
+    private final ConcurrentMap<String, Building> buildings = new ConcurrentHashMap<>();
+    private final SimulationClock clock;
+    private final ExecutionMode mode;
+
+    public Campus() {
+        this(SimulationClock.realTime(), ExecutionMode.SHARED_SCHEDULER);
+    }
+
+    public Campus(SimulationClock clock, ExecutionMode mode) {
+        this.clock = clock;
+        this.mode = mode;
+    }
+
+    // creates a building on the campus clock. it does not move until started
+    public Building addBuilding(String building_ID, List<String> elevators, int min_floor, int max_floor) {
+        Building building = new Building(building_ID, elevators, min_floor, max_floor, clock, mode);
+        if (buildings.putIfAbsent(building_ID, building) != null) {
+            throw new RuntimeException("Building " + building_ID + " already on campus");
+        }
+        return building;
+    }
+
+    public Building building(String building_ID) {
+        Building building = buildings.get(building_ID);
+        if (building == null) {
+            throw new RuntimeException("No building " + building_ID + " on campus");
+        }
+        return building;
+    }
+
+    public Collection<Building> buildings() {
+        return Collections.unmodifiableCollection(buildings.values());
+    }
+
+    public ElevatorRequest makeRequest(String building_ID, int from, int to) {
+        return building(building_ID).makeRequest(from, to);
+    }
+
+    // routes the request to the building it was made for
+    public CompletableFuture<ElevatorRequest> submit(ElevatorRequest request) {
+        return building(request.getBuildingID()).submit(request);
+    }
+
+    public void moveFloors(ElevatorRequest request) {
+        building(request.getBuildingID()).moveFloors(request);
+    }
+
+    public void start() {
+        buildings.values().forEach(Building::start);
+    }
+
+    public void stop() {
+        buildings.values().forEach(Building::stop);
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Building building : buildings.values()) {
+            if (!building.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // one pass over every car's published floor and status and each building's pending count. takes no locks, so
+    // it never holds up dispatch, and figures from different buildings may be a moment apart
+    public CampusStatus status() {
+        List<CampusStatus.BuildingStatus> perBuilding = new ArrayList<>();
+        for (Building building : buildings.values()) {
+            Fleet fleet = building.fleet();
+            int moving = 0;
+            for (int slot = 0; slot < fleet.size(); slot++) {
+                if (fleet.status(slot) != ElevatorStatus.STATIONARY) {
+                    moving++;
+                }
+            }
+            perBuilding.add(new CampusStatus.BuildingStatus(building.getID(), fleet.size(), moving,
+                    building.pendingRequests(), building.completedRequests()));
+        }
+        return new CampusStatus(perBuilding);
+    }
+}
@@ -0,0 +1,103 @@
+package elevatorsystem;
+
+import java.util.Collections;
+import java.util.List;
+
+// point in time summary of a campus, see Campus.status()
+public final class CampusStatus {
+
+    private final List<BuildingStatus> buildings;
+    private final int elevators;
+    private final int moving;
+    private final int pending;
+    private final long completed;
+
+    public static final class BuildingStatus {
+        private final String buildingID;
+        private final int elevators;
+        private final int moving;
+        private final int pending;
+        private final long completed;
+
+        BuildingStatus(String building_ID, int elevators, int moving, int pending, long completed) {
+            this.buildingID = building_ID;
+            this.elevators = elevators;
+            this.moving = moving;
+            this.pending = pending;
+            this.completed = completed;
+        }
+
+        public String getBuildingID() {
+            return buildingID;
+        }
+
+        public int getElevators() {
+            return elevators;
+        }
+
+        // cars not STATIONARY
+        public int getMoving() {
+            return moving;
+        }
+
+        // requests waiting for a car to take them
+        public int getPending() {
+            return pending;
+        }
+
+        // rides finished so far
+        public long getCompleted() {
+            return completed;
+        }
+
+        @Override
+        public String toString() {
+            return buildingID + ": " + moving + "/" + elevators + " moving, " + pending + " pending, "
+                    + completed + " completed";
+        }
+    }
+
+    CampusStatus(List<BuildingStatus> buildings) {
+        this.buildings = Collections.unmodifiableList(buildings);
+        int elevators = 0;
+        int moving = 0;
+        int pending = 0;
+        long completed = 0;
+        for (BuildingStatus b : buildings) {
+            elevators += b.elevators;
+            moving += b.moving;
+            pending += b.pending;
+            completed += b.completed;
+        }
+        this.elevators = elevators;
+        this.moving = moving;
+        this.pending = pending;
+        this.completed = completed;
+    }
+
+    public List<BuildingStatus> getBuildings() {
+        return buildings;
+    }
+
+    public int getElevators() {
+        return elevators;
+    }
+
+    public int getMoving() {
+        return moving;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    @Override
+    public String toString() {
+        return moving + "/" + elevators + " moving, " + pending + " pending, " + completed + " completed in "
+                + buildings.size() + " buildings";
+    }
+}
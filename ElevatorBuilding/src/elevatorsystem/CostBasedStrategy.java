@@ -0,0 +1,47 @@
+package elevatorsystem;
+
+// estimates how long each car would take to reach the caller given the stops it already has queued, and picks
+// the cheapest. unlike the nearest car rule it will queue a request behind a busy car when that is still quicker
+public class CostBasedStrategy implements DispatchStrategy {
+
+    @Override
+    public int select(Fleet fleet, ElevatorRequest request) {
+        int best = -1;
+        long bestCost = Long.MAX_VALUE;
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            ElevatorSnapshot car = fleet.snapshot(slot);
+            if (!car.hasRoom()) {
+                continue;
+            }
+            long cost = estimate(fleet, car, request);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = slot;
+            }
+        }
+        return best;
+    }
+
+    // milliseconds until car could pick up request. every queued request is counted as one door stop, so busy cars
+    // are overestimated rather than under
+    static long estimate(Fleet fleet, ElevatorSnapshot car, ElevatorRequest request) {
+        int floor = car.floor();
+        int from = request.getFrom();
+        ElevatorStatus status = car.status();
+        long travel;
+        if (status == ElevatorStatus.STATIONARY
+                || status == ElevatorStatus.UP && request.getType() == ElevatorStatus.UP && from > floor
+                || status == ElevatorStatus.DOWN && request.getType() == ElevatorStatus.DOWN && from < floor) {
+            travel = Math.abs(floor - from); // can go straight there
+        }
+        else if (status == ElevatorStatus.UP) {
+            int top = car.highestStop(); // has to finish its way up first
+            travel = (top - floor) + Math.abs(top - from);
+        }
+        else {
+            int bottom = car.lowestStop(); // has to finish its way down first
+            travel = (floor - bottom) + Math.abs(from - bottom);
+        }
+        return travel * fleet.millisBetweenFloors() + car.queued() * fleet.millisOpeningClosingDoors();
+    }
+}
@@ -0,0 +1,135 @@
+package elevatorsystem;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// learns where hall calls come from by time of day and picks parking floors for idle cars. calls are counted per
+// floor in buckets of the day, over a sliding window of the last few days, so the forecast for now is how many calls
+// each floor made at this time of day recently. counting is lock-free, callers from any thread may record at once
+public class DemandForecaster {
+
+    static final long day_millis = 24L * 60 * 60 * 1000;
+
+    private final int minFloor;
+    private final int floors;
+    private final long bucketMillis;
+    private final int bucketsPerDay;
+    private final int windowDays;
+    private final AtomicIntegerArray counts; // [day % windowDays][bucket][floor]
+    private final AtomicLongArray dayOf;     // day each slice of counts holds
+
+    public DemandForecaster(int min_floor, int max_floor) {
+        this(min_floor, max_floor, 15 * 60 * 1000, 7);
+    }
+
+    public DemandForecaster(int min_floor, int max_floor, long bucket_millis, int window_days) {
+        if (bucket_millis <= 0 || window_days <= 0) {
+            throw new RuntimeException("Bucket and window must be positive: " + bucket_millis + ", " + window_days);
+        }
+        minFloor = min_floor;
+        floors = max_floor - min_floor + 1;
+        bucketMillis = bucket_millis;
+        bucketsPerDay = (int) ((day_millis + bucket_millis - 1) / bucket_millis);
+        windowDays = window_days;
+        counts = new AtomicIntegerArray(window_days * bucketsPerDay * floors);
+        dayOf = new AtomicLongArray(window_days);
+        for (int d = 0; d < window_days; d++) {
+            dayOf.set(d, d);
+        }
+    }
+
+    // counts a hall call from floor at time now
+    public void record(int floor, long now) {
+        int f = floor - minFloor;
+        if (f < 0 || f >= floors) {
+            return;
+        }
+        long day = Math.max(now, 0) / day_millis;
+        int slice = (int) (day % windowDays);
+        long held = dayOf.get(slice);
+        if (held < day && dayOf.compareAndSet(slice, held, day)) {
+            // a new day reuses the oldest slice. calls counted into it while it is cleared are lost
+            int base = slice * bucketsPerDay * floors;
+            for (int i = 0; i < bucketsPerDay * floors; i++) {
+                counts.set(base + i, 0);
+            }
+        }
+        counts.incrementAndGet(index(slice, bucket(now), f));
+    }
+
+    // calls from floor at this time of day over the window
+    public long demand(int floor, long now) {
+        int f = floor - minFloor;
+        if (f < 0 || f >= floors) {
+            return 0;
+        }
+        long day = Math.max(now, 0) / day_millis;
+        int bucket = bucket(now);
+        long total = 0;
+        for (int slice = 0; slice < windowDays; slice++) {
+            long held = dayOf.get(slice);
+            if (held <= day && held > day - windowDays) {
+                total += counts.get(index(slice, bucket, f));
+            }
+        }
+        return total;
+    }
+
+    // where the car in slot should wait so that the expected distance to the next call is smallest, given where
+    // the other idle and parking cars are. each floor's forecast is weighted by how far it is from the nearest of
+    // them or from the candidate floor, whichever is closer. returns the car's own floor when nothing is expected
+    int parkingFloor(Fleet fleet, int slot, long now) {
+        int here = fleet.snapshot(slot).floor();
+        long[] expected = new long[floors];
+        long total = 0;
+        for (int f = 0; f < floors; f++) {
+            expected[f] = demand(minFloor + f, now);
+            total += expected[f];
+        }
+        if (total == 0) {
+            return here;
+        }
+        int[] covered = new int[floors]; // floors from each floor to the nearest other car waiting for calls
+        Arrays.fill(covered, Integer.MAX_VALUE);
+        for (int other = 0; other < fleet.size(); other++) {
+            if (other == slot) {
+                continue;
+            }
+            ElevatorSnapshot car = fleet.snapshot(other);
+            int at = car.parkingFloor(); // already on its way to park
+            if (at == Fleet.NOT_PARKING) {
+                if (car.status() != ElevatorStatus.STATIONARY || car.queued() != 0) {
+                    continue; // busy, it will not be where it is for long
+                }
+                at = car.floor();
+            }
+            for (int f = 0; f < floors; f++) {
+                covered[f] = Math.min(covered[f], Math.abs(minFloor + f - at));
+            }
+        }
+        int best = here;
+        long bestCost = Long.MAX_VALUE;
+        for (int p = 0; p < floors; p++) {
+            int candidate = minFloor + p;
+            long cost = 0;
+            for (int f = 0; f < floors; f++) {
+                cost += expected[f] * Math.min(covered[f], Math.abs(f - p));
+            }
+            // on a tie stay closest to where the car is
+            if (cost < bestCost || (cost == bestCost && Math.abs(candidate - here) < Math.abs(best - here))) {
+                best = candidate;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private int bucket(long now) {
+        return (int) ((Math.max(now, 0) % day_millis) / bucketMillis);
+    }
+
+    private int index(int slice, int bucket, int floor) {
+        return (slice * bucketsPerDay + bucket) * floors + floor;
+    }
+}
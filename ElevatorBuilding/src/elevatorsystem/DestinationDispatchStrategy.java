@@ -0,0 +1,48 @@
+package elevatorsystem;
+
+// groups passengers by destination: a request goes to a car that already carries or has queued someone for the
+// same floor in the same direction, as long as that car can still pick the caller up on its way. otherwise the
+// fallback strategy decides
+public class DestinationDispatchStrategy implements DispatchStrategy {
+
+    private final DispatchStrategy fallback;
+
+    public DestinationDispatchStrategy() {
+        this(new CostBasedStrategy());
+    }
+
+    public DestinationDispatchStrategy(DispatchStrategy fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public int select(Fleet fleet, ElevatorRequest request) {
+        int best = -1;
+        long bestCost = Long.MAX_VALUE;
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            ElevatorSnapshot car = fleet.snapshot(slot);
+            if (car.hasRoom() && onTheWay(car, request) && car.servesDestination(request.getTo(), request.getType())) {
+                long cost = CostBasedStrategy.estimate(fleet, car, request);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = slot;
+                }
+            }
+        }
+        return best >= 0 ? best : fallback.select(fleet, request);
+    }
+
+    private static boolean onTheWay(ElevatorSnapshot car, ElevatorRequest request) {
+        int floor = car.floor();
+        switch (car.status()) {
+            case STATIONARY:
+                return true;
+            case UP:
+                return request.getType() == ElevatorStatus.UP && request.getFrom() > floor;
+            case DOWN:
+                return request.getType() == ElevatorStatus.DOWN && request.getFrom() < floor;
+            default:
+                return false;
+        }
+    }
+}
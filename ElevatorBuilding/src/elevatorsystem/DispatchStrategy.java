@@ -0,0 +1,8 @@
+package elevatorsystem;
+
+// chooses which elevator serves a request. called with the building's dispatch lock held, one request at a time
+public interface DispatchStrategy {
+
+    // slot of the elevator that should serve request, or -1 to leave it pending until the fleet changes
+    int select(Fleet fleet, ElevatorRequest request);
+}
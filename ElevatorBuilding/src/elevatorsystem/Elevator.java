@@ -1,106 +1,311 @@
 package elevatorsystem;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 class Elevator {
     private static final Logger LOGGER = Logger.getLogger(Elevator.class.getName());
-    private static final int milliseconds_between_floors = 3000;
-    private static final int milliseconds_opening_closing_doors = 5000;
+    static final int milliseconds_between_floors = 3000;
+    static final int milliseconds_opening_closing_doors = 5000;
+    static final long IDLE = -1;
+    static final int default_capacity = 16;
 
     private final String ID;
+    private final int slot; // position in the building's dispatch index
+    private final int eventSource;
     private final Building building;
 
+    // the car's own state, only ever touched by its step. other threads read the published snapshot
     private int floor;
     private ElevatorStatus status = ElevatorStatus.STATIONARY;
+    private volatile long statusSince; // clock time status was entered
+    private volatile ElevatorSnapshot snapshot;
 
-    private ElevatorBlockingQueueV2 queue;
+    private final ElevatorBlockingQueueV2 queue;
+    private final List<ElevatorRequest> arrived = new ArrayList<>(); // riders the last step let off, only used by step
 
-    Elevator(String ID, int starting_floor, Building building, boolean dummy) {
+    // lifecycle, guarded by this
+    private boolean running = false;
+    private boolean terminated = false;
+    private boolean idle = false;
+    private boolean stepping = false; // a scheduled step is running
+    private Thread thread;
+    private Future<?> nextStep;
+
+    Elevator(String ID, int slot, int starting_floor, Building building) {
         this.ID = ID;
+        this.slot = slot;
         this.building = building;
         this.floor = starting_floor;
-        if (!dummy) {
-            this.queue = new ElevatorBlockingQueueV2(this, milliseconds_opening_closing_doors);
-            LoggerSetup.setUpLogger(LOGGER, Level.INFO);
-            new Thread(() -> {
-                try {
-                    handleQueue();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+        this.statusSince = building.clock().currentTimeMillis();
+        this.eventSource = EventLog.source(building.getID() + "/" + ID);
+        this.queue = new ElevatorBlockingQueueV2(this, building.clock(), building.minFloor(), building.maxFloor(),
+                starting_floor);
+        LoggerSetup.setUpLogger(LOGGER, Level.INFO);
+    }
+
+    synchronized void start(ExecutionMode mode) {
+        if (running || terminated) {
+            throw new RuntimeException("Elevator " + ID + " already started");
+        }
+        running = true;
+        switch (mode) {
+            case THREAD_PER_ELEVATOR:
+                thread = building.clock().newThread(this::runOnThread);
+                thread.setName("elevator-" + building.getID() + "-" + ID);
+                thread.start();
+                break;
+            case SHARED_SCHEDULER:
+                nextStep = building.clock().schedule(this::runScheduledStep, 0);
+                break;
+            default:
+                throw new RuntimeException("Unsupported execution mode: " + mode);
+        }
+    }
+
+    // the elevator finishes its current step and stops. cars are left wherever they are
+    synchronized void stop() {
+        if (!running) {
+            terminate();
+            return;
+        }
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        else if (idle || (!stepping && nextStep.cancel(false))) {
+            terminate(); // a step that had already begun sees running is false before it does anything
+        }
+        // otherwise a step is in flight and terminates when it sees running is false
+    }
+
+    private synchronized boolean isRunning() {
+        return running;
+    }
+
+    // must hold this
+    private void terminate() {
+        if (!terminated) {
+            terminated = true;
+            building.elevatorTerminated();
+        }
+    }
+
+    private void runOnThread() {
+        try {
+            while (isRunning()) {
+                long delay = step();
+                if (delay == IDLE) {
+                    queue.awaitRequests();
+                }
+                else {
+                    building.clock().sleep(delay);
                 }
-            }).start();
-        }
-    }
-
-    private void handleQueue() throws InterruptedException {
-        while (true) {
-            LOGGER.info(String.format("Elevator %s at floor %d with status %s", ID, floor, status));
-            switch (status) {
-                case STATIONARY:
-                    changeStatus(queue.process());
-                    break;
-                case DOWN:
-                case DOWN_BUSY:
-                case UP:
-                case UP_BUSY:
-                    int floormove = (status == ElevatorStatus.UP || status == ElevatorStatus.UP_BUSY) ? 1 : -1;
-                    Thread.sleep(milliseconds_between_floors);
-                    changeFloors(floor + floormove);
-                    break;
-                default:
-                    throw new RuntimeException("Unsupported status: " + status);
             }
         }
+        catch (InterruptedException e) {
+            // stopped
+        }
+        finally {
+            synchronized (this) {
+                terminate();
+            }
+        }
+    }
+
+    private void runScheduledStep() {
+        synchronized (this) {
+            if (!running) {
+                terminate();
+                return;
+            }
+            stepping = true;
+        }
+        long delay;
+        try {
+            delay = step();
+        }
+        catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Elevator " + ID + " failed", e);
+            synchronized (this) {
+                stepping = false;
+                running = false;
+                terminate();
+            }
+            return;
+        }
+        synchronized (this) {
+            stepping = false;
+            if (!running) {
+                terminate();
+                return;
+            }
+            if (delay != IDLE) {
+                nextStep = building.clock().schedule(this::runScheduledStep, delay);
+                return;
+            }
+            idle = true;
+        }
+        if (queue.hasRequests()) {
+            wake(); // a request arrived after process() looked
+        }
+    }
+
+    private synchronized void wake() {
+        if (running && idle) {
+            idle = false;
+            nextStep = building.clock().schedule(this::runScheduledStep, 0);
+        }
+    }
+
+    // runs one transition of the state machine. returns how long until the next one, or IDLE if there is nothing
+    // to do until a request arrives. only the elevator's own driver (or a benchmark standing in for it) calls this
+    long step() {
+        if (EventLog.ENABLED) {
+            EventLog.record(building.clock().currentTimeMillis(), EventLog.Type.AT_FLOOR, eventSource, floor,
+                    status.ordinal(), 0);
+        }
+        switch (status) {
+            case STATIONARY:
+                ElevatorStatus next = queue.process(arrived);
+                if (next == ElevatorStatus.STATIONARY) {
+                    next = building.park(this); // nothing to do, maybe wait somewhere calls are expected
+                }
+                changeStatus(next);
+                break;
+            case DOWN:
+            case DOWN_BUSY:
+            case UP:
+            case UP_BUSY:
+                int floormove = (status == ElevatorStatus.UP || status == ElevatorStatus.UP_BUSY) ? 1 : -1;
+                changeFloors(floor + floormove);
+                break;
+            default:
+                throw new RuntimeException("Unsupported status: " + status);
+        }
+        completeArrivals();
+        long delay = queue.takeStop() ? milliseconds_opening_closing_doors : 0;
+        if (status != ElevatorStatus.STATIONARY) {
+            delay += milliseconds_between_floors;
+        }
+        else if (delay == 0) {
+            return IDLE;
+        }
+        return delay;
     }
 
     void move(ElevatorRequest request) {
-        ElevatorStatus newStatus = queue.put(request);
-        changeStatus(newStatus);
+        building.elevatorAssigned(this, request);
+        queue.put(request);
+        wake();
+    }
+
+    void moveAll(List<ElevatorRequest> requests) {
+        for (ElevatorRequest request : requests) {
+            building.elevatorAssigned(this, request);
+        }
+        queue.putAll(requests);
+        wake();
+    }
+
+    // called by the queue holding its lock, so neither may take any other lock
+    void fullChanged(boolean full) {
+        building.elevatorFullChanged(this, full);
+    }
+
+    void leftBehind(List<ElevatorRequest> requests) {
+        building.redispatch(requests);
+    }
+
+    // puts back a car's state from before a restart. only before start()
+    void restore(int floor, ElevatorStatus status, List<ElevatorRequest> waiting, List<ElevatorRequest> riding) {
+        this.floor = floor;
+        this.status = queue.restore(floor, waiting, riding, status);
+        building.updateElevator(this);
+    }
+
+    // latest published state. no locks, and floor, status and stop plan always belong together
+    ElevatorSnapshot snapshot() {
+        return snapshot;
+    }
+
+    // only the queue publishes, holding its lock
+    void publish(ElevatorSnapshot snapshot) {
+        this.snapshot = snapshot;
     }
 
     int getCurrentFloor() {
-        return floor;
+        return snapshot.floor();
     }
 
     private void changeStatus(ElevatorStatus status) {
-        synchronized (building) {
-            if (this.status != status) {
-                this.status = status;
-                building.updateElevator(this);
-                LOGGER.info(String.format("Elevator %s now has status %s", ID, status));
-            }
+        if (this.status != status) {
+            setStatus(status);
+            building.elevatorMoved(this);
+            building.updateElevator(this);
         }
     }
 
-    private void changeFloors(int floor) throws InterruptedException {
-        building.removeElevatorFromService(this);
-        ElevatorStatus status = queue.reachFloor(floor);
-        synchronized(building) {
-            this.floor = floor;
-            if (floor > building.maxFloor() || floor < building.minFloor()) {
-                throw new RuntimeException("Out of bounds floor: " + floor);
-            }
-            if (this.status != status) {
-                LOGGER.info(String.format("Elevator %s now has status %s", ID, status));
-                this.status = status;
-            }
-            building.updateElevator(this);
+    private void changeFloors(int floor) {
+        if (floor > building.maxFloor() || floor < building.minFloor()) {
+            throw new RuntimeException("Out of bounds floor: " + floor);
+        }
+        ElevatorStatus status = queue.reachFloor(floor, arrived);
+        this.floor = floor;
+        if (this.status != status) {
+            setStatus(status);
+        }
+        building.elevatorMoved(this);
+        building.updateElevator(this); // moves the car in the index, it stays visible to dispatch throughout
+    }
+
+    // outside the queue's lock, so listeners and whatever was chained on whenCompleted() may submit, dispatch or
+    // plan without deadlocking against a dispatcher waiting for this car
+    private void completeArrivals() {
+        for (int i = 0; i < arrived.size(); i++) {
+            arrived.get(i).complete();
         }
+        arrived.clear();
     }
 
+    private void setStatus(ElevatorStatus status) {
+        long now = building.clock().currentTimeMillis();
+        building.metrics().statusLeft(slot, this.status, now - statusSince);
+        EventLog.record(now, EventLog.Type.STATUS, eventSource, status.ordinal(), 0, 0);
+        statusSince = now;
+        this.status = status;
+    }
 
     ElevatorStatus getCurrentStatus() {
-        return status;
+        return snapshot.status();
+    }
+
+    long getStatusSince() {
+        return statusSince;
     }
 
     String getID() {
         return ID;
     }
 
+    int getEventSource() {
+        return eventSource;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    ElevatorBlockingQueueV2 queue() {
+        return queue;
+    }
+
 
 
 
 
 
-}
\ No newline at end of file
+}
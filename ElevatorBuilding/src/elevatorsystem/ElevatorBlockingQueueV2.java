@@ -1,152 +1,298 @@
 package elevatorsystem;
 
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
+// one car's stop plan. the car runs LOOK: it keeps going while it has a stop ahead, picking up every call going
+// its way as it passes the floor, and turns round only after the last stop in its direction. a car takes at most
+// capacity passengers: it is offered no new calls while its riders and waiting calls fill it, and callers who
+// cannot board are handed back to the building for another car. every change to the car's position or plan is
+// made under this queue's lock and published as an ElevatorSnapshot before the lock is let go, so snapshots follow
+// one another in the order the changes were made and readers never need the lock
 class ElevatorBlockingQueueV2 {
 
-    private static final Logger LOGGER = Logger.getLogger(ElevatorBlockingQueueV2.class.getName());
+    static final int NOT_PARKING = Integer.MIN_VALUE;
 
-    private static final Comparator<ElevatorRequest> comparator = new Comparator<ElevatorRequest>() {
-        @Override
-        public int compare(ElevatorRequest o1, ElevatorRequest o2) {
-            if (o1.getFrom() != o2.getFrom()) {
-                return Integer.compare(o1.getFrom(), o2.getFrom());
-            }
-            return Integer.compare(o1.getTo(), o2.getTo());
-        }
-    };
-    private final TreeSet<ElevatorRequest> upRequests = new TreeSet<>(comparator);
-    private final TreeSet<ElevatorRequest> downRequests = new TreeSet<>(comparator);
-
-    private final ElevatorMap currentRequests = new ElevatorMap();
-    private final long open_close;
+    private final CallMap upCalls;   // waiting to be picked up, going up
+    private final CallMap downCalls; // waiting to be picked up, going down
+    private final ElevatorMap currentRequests;
     private final Elevator elevator;
+    private final int minFloor;
+    private final SimulationClock clock;
+    private boolean stopped = false; // doors opened during the last reachFloor/process call
+    private int capacity = Elevator.default_capacity;
+    private boolean full = false; // as last reported to the building
+    private int parkFloor = NOT_PARKING; // where an idle car is heading with no one to pick up
+    // where the car is and which way it is going, as of the last reachFloor/process. only the car's own step moves
+    // it, so the plan never has to ask the car
+    private int floor;
+    private ElevatorStatus status = ElevatorStatus.STATIONARY;
 
-    ElevatorBlockingQueueV2(Elevator e, long open_close_milliseconds) {
-        this.open_close = open_close_milliseconds;
+    ElevatorBlockingQueueV2(Elevator e, SimulationClock clock, int min_floor, int max_floor, int starting_floor) {
+        this.clock = clock;
+        upCalls = new CallMap(min_floor, max_floor);
+        downCalls = new CallMap(min_floor, max_floor);
+        currentRequests = new ElevatorMap(min_floor, max_floor);
         elevator = e;
-        LoggerSetup.setUpLogger(LOGGER, Level.INFO);
+        minFloor = min_floor;
+        floor = starting_floor;
+        publish();
     }
 
 
-    // updates position and removes floor from queue if it's reached. returns status after floor is reached
-    synchronized ElevatorStatus reachFloor(int floor) throws InterruptedException {
-        boolean stop = currentRequests.completeRequests(floor);
-        ElevatorStatus resultStatus;
-        ElevatorRequest dummyCurrentFloor = new ElevatorRequest(floor);
-        switch (elevator.getCurrentStatus()) {
+    // updates position and removes floor from queue if it's reached. returns status after floor is reached.
+    // never blocks, the elevator spends the door time itself if takeStop() says it stopped here. riders who got off
+    // are added to arrived and completed by the caller after the lock is let go, so whatever their completion runs
+    // can dispatch or submit without holding this car
+    synchronized ElevatorStatus reachFloor(int floor, List<ElevatorRequest> arrived) {
+        boolean up;
+        switch (status) {
             case UP:
-                NavigableSet<ElevatorRequest> minHigher = upRequests.tailSet(dummyCurrentFloor, true);
-                while (minHigher.size() > 0 && minHigher.first() != null && minHigher.first().getFrom() == floor) {
-                    ElevatorRequest req = minHigher.pollFirst();
-                    currentRequests.putRequest(req);
-                    stop = true;
-                }
-                resultStatus = !currentRequests.isEmpty() ? ElevatorStatus.UP : ElevatorStatus.STATIONARY;
+                up = true;
                 break;
             case DOWN:
-                NavigableSet<ElevatorRequest> minLower = downRequests.tailSet(dummyCurrentFloor, true);
-                while (minLower.size() > 0 && minLower.first() != null && minLower.first().getFrom() == floor) {
-                    ElevatorRequest req = minLower.pollFirst();
-                    currentRequests.putRequest(req);
-                    stop = true;
-                }
-                resultStatus = !currentRequests.isEmpty() ? ElevatorStatus.DOWN : ElevatorStatus.STATIONARY;
-                break;
-            case UP_BUSY:
-                stop = downRequests.last().getFrom() == floor || stop;
-                resultStatus = skipToFurthestUpOrDownRequest(true, floor);
-                break;
-            case DOWN_BUSY:
-                stop = upRequests.first().getFrom() == floor || stop;
-                resultStatus = skipToFurthestUpOrDownRequest(false, floor);
+                up = false;
                 break;
             default:
                 throw new RuntimeException("Elevator should not be stationary and moving");
         }
+        if (floor == parkFloor) {
+            parkFloor = NOT_PARKING;
+        }
+        boolean stop = currentRequests.takeArrivals(floor, arrived);
+        stop = board(up ? upCalls : downCalls, floor) || stop;
+        ElevatorStatus resultStatus;
+        if (hasStopBeyond(floor, up)) {
+            resultStatus = up ? ElevatorStatus.UP : ElevatorStatus.DOWN;
+        }
+        else {
+            // last stop this way, turn round
+            stop = board(up ? downCalls : upCalls, floor) || stop;
+            if (hasStopBeyond(floor, !up)) {
+                resultStatus = up ? ElevatorStatus.DOWN : ElevatorStatus.UP;
+            }
+            else {
+                resultStatus = ElevatorStatus.STATIONARY;
+            }
+        }
         if (stop) {
-            LOGGER.info(String.format("Elevator %s OPENING/CLOSING", elevator.getID()));
-            Thread.sleep(open_close);
+            doorsOpened(floor);
         }
-        return resultStatus;
+        this.floor = floor;
+        return moved(resultStatus);
     }
 
-    private ElevatorStatus skipToFurthestUpOrDownRequest(boolean up, int floor) {
-        TreeSet<ElevatorRequest> request = up ? downRequests : upRequests;
-        ElevatorRequest furthest = up ? downRequests.last() : upRequests.first();
-        if (furthest.getFrom() == floor) {
-            while (furthest != null && furthest.getFrom() == floor) {
-                ElevatorRequest furthestRemoved = up ? downRequests.pollLast() : upRequests.pollFirst();
-                furthest = request.isEmpty() ? null : up ? downRequests.last() : upRequests.first();
-                currentRequests.putRequest(furthestRemoved);
-            }
-            return up ? ElevatorStatus.DOWN : ElevatorStatus.UP;
+    synchronized void put(ElevatorRequest elem) {
+        add(elem);
+        loadChanged();
+        publish();
+        clock.signalAll(this);
+    }
+
+    synchronized void putAll(List<ElevatorRequest> elems) {
+        elems.forEach(this::add);
+        loadChanged();
+        publish();
+        clock.signalAll(this);
+    }
+
+    synchronized void setCapacity(int passengers) {
+        if (passengers < 1) {
+            throw new RuntimeException("Capacity must be at least 1: " + passengers);
+        }
+        capacity = passengers;
+        loadChanged();
+        publish();
+    }
+
+    // sends an idle car to wait at floor. returns the way it has to go, or STATIONARY if it is there already or has
+    // been given work meanwhile. the first call it is given ends the trip
+    synchronized ElevatorStatus park(int target) {
+        if (hasRequests() || target == floor) {
+            return status;
         }
-        return up ? ElevatorStatus.UP_BUSY : ElevatorStatus.DOWN_BUSY;
+        parkFloor = target;
+        return moved(target > floor ? ElevatorStatus.UP : ElevatorStatus.DOWN);
     }
 
-    synchronized ElevatorStatus put(ElevatorRequest elem) {
+    // passengers making the same trip are kept apart, each one is completed when they arrive
+    private void add(ElevatorRequest elem) {
+        parkFloor = NOT_PARKING;
         switch(elem.getType()) {
             case UP:
-                if (upRequests.contains(elem)) {
-                    elem.complete();
-                }
-                else {
-                    upRequests.add(elem);
-                }
+                upCalls.add(elem);
                 break;
             case DOWN:
-                if (downRequests.contains(elem)) {
-                    elem.complete();
-                }
-                else {
-                    downRequests.add(elem);
-                }
+                downCalls.add(elem);
                 break;
             default:
                 throw new RuntimeException("Request cannot be stationary");
         }
-        notifyAll();
-        return elevator.getCurrentStatus();
     }
 
-    // returns status of elevator to go to requested floor. should call this when elevator is STATIONARY
-    synchronized ElevatorStatus process() throws InterruptedException {
-        while (upRequests.size() == 0 && downRequests.size() == 0) {
-            wait();
+    // refills the queue after a restart and returns status, or STATIONARY if the queue no longer backs it up
+    synchronized ElevatorStatus restore(int floor, List<ElevatorRequest> waiting, List<ElevatorRequest> riding,
+                                        ElevatorStatus status) {
+        waiting.forEach(this::add);
+        riding.forEach(currentRequests::putRequest);
+        loadChanged();
+        this.floor = floor;
+        switch (status) {
+            case UP:
+            case UP_BUSY:
+                return moved(hasStopBeyond(floor, true) ? ElevatorStatus.UP : ElevatorStatus.STATIONARY);
+            case DOWN:
+            case DOWN_BUSY:
+                return moved(hasStopBeyond(floor, false) ? ElevatorStatus.DOWN : ElevatorStatus.STATIONARY);
+            default:
+                return moved(status);
         }
-        int floor = elevator.getCurrentFloor();
-        if (upRequests.size() != 0) {
-            return getFurthestRequest(true, floor);
+    }
+
+    // returns status of elevator to go to the next stop, or STATIONARY if there is nothing to do.
+    // should call this when elevator is STATIONARY. riders who got off are added to arrived, as in reachFloor
+    synchronized ElevatorStatus process(List<ElevatorRequest> arrived) {
+        boolean stop = currentRequests.takeArrivals(floor, arrived);
+        ElevatorStatus resultStatus;
+        if (!currentRequests.isEmpty()) {
+            // riders from before a restart, take them where they are going first
+            resultStatus = currentRequests.highestFloor(floor) > floor ? ElevatorStatus.UP : ElevatorStatus.DOWN;
         }
-        else if (downRequests.size() != 0) {
-            return getFurthestRequest(false, floor);
+        else if (upCalls.hasCall(floor) || downCalls.hasCall(floor)) {
+            // calls from the floor the car is on. pick up one way, the others are served on the way back
+            boolean up = upCalls.hasCall(floor);
+            stop = board(up ? upCalls : downCalls, floor) || stop;
+            resultStatus = up ? ElevatorStatus.UP : ElevatorStatus.DOWN;
         }
-        throw new RuntimeException("Blocking queue failed to block");
+        else {
+            // head for the closest call, whichever way it is going
+            long above = Math.min(upCalls.nextAbove(floor), downCalls.nextAbove(floor));
+            long below = Math.max(upCalls.nextBelow(floor), downCalls.nextBelow(floor));
+            if (above == CallMap.NONE_ABOVE && below == CallMap.NONE_BELOW) {
+                resultStatus = ElevatorStatus.STATIONARY;
+            }
+            else {
+                resultStatus = above - floor <= floor - below ? ElevatorStatus.UP : ElevatorStatus.DOWN;
+            }
+        }
+        if (stop) {
+            doorsOpened(floor);
+        }
+        return moved(resultStatus);
     }
 
-    private ElevatorStatus getFurthestRequest(boolean up, int floor) throws InterruptedException {
-        TreeSet<ElevatorRequest> requests = up ? upRequests : downRequests;
-        ElevatorRequest furthest = up ? requests.first() : requests.last();
-        if (furthest.getFrom() == floor) { // request is coming from floor that elevator is currently in
-            while (furthest != null && furthest.getFrom() == floor) {
-                ElevatorRequest furthestRemoved = up ? requests.pollFirst() : requests.pollLast();
-                furthest = requests.isEmpty() ? null : up ? requests.first() : requests.last();
-                currentRequests.putRequest(furthestRemoved);
-            }
-            LOGGER.info(String.format("Elevator %s OPENING/CLOSING", elevator.getID()));
+    // requests waiting to be picked up plus riders on board
+    private int size() {
+        return upCalls.size() + downCalls.size() + currentRequests.size();
+    }
 
-            wait(open_close);
-            currentRequests.completeRequests(floor);
-            return up ? ElevatorStatus.UP : ElevatorStatus.DOWN;
+    // lowest floor the elevator still has to visit, or floor if it has nowhere to go below it
+    private int lowestStop(int floor) {
+        return Math.min(currentRequests.lowestFloor(floor),
+                Math.min(upCalls.lowestFloor(floor), downCalls.lowestFloor(floor)));
+    }
+
+    // highest floor the elevator still has to visit, or floor if it has nowhere to go above it
+    private int highestStop(int floor) {
+        return Math.max(currentRequests.highestFloor(floor),
+                Math.max(upCalls.highestFloor(floor), downCalls.highestFloor(floor)));
+    }
+
+    // a copy of the plan as it stands, to try changes on without touching the car
+    synchronized StopPlan plan() {
+        return new StopPlan(minFloor, floor, status, currentRequests, upCalls, downCalls);
+    }
+
+    synchronized boolean hasRequests() {
+        return !upCalls.isEmpty() || !downCalls.isEmpty() || !currentRequests.isEmpty();
+    }
+
+    // blocks until there is a request to process
+    synchronized void awaitRequests() throws InterruptedException {
+        while (!hasRequests()) {
+            clock.await(this, 0);
         }
+    }
+
+    // whether the doors opened since the last call
+    synchronized boolean takeStop() {
+        boolean result = stopped;
+        stopped = false;
+        return result;
+    }
+
+    // whether there is anywhere to stop beyond floor going up, or going down
+    private boolean hasStopBeyond(int floor, boolean up) {
         if (up) {
-            return furthest.getFrom() > floor ? ElevatorStatus.UP : ElevatorStatus.DOWN_BUSY;
+            return parkFloor > floor
+                    || currentRequests.highestFloor(floor) > floor
+                    || upCalls.nextAbove(floor) != CallMap.NONE_ABOVE
+                    || downCalls.nextAbove(floor) != CallMap.NONE_ABOVE;
         }
-        else {
-            return furthest.getFrom() > floor ? ElevatorStatus.UP_BUSY : ElevatorStatus.DOWN;
+        return (parkFloor != NOT_PARKING && parkFloor < floor)
+                || currentRequests.lowestFloor(floor) < floor
+                || upCalls.nextBelow(floor) != CallMap.NONE_BELOW
+                || downCalls.nextBelow(floor) != CallMap.NONE_BELOW;
+    }
+
+    // moves everyone waiting at floor into the car while there is room. the rest are handed back to the building.
+    // returns whether there was anyone
+    private boolean board(CallMap calls, int floor) {
+        ElevatorRequest request = calls.take(floor);
+        if (request == null) {
+            return false;
+        }
+        List<ElevatorRequest> leftBehind = null;
+        while (request != null) {
+            ElevatorRequest next = request.next; // putRequest relinks it
+            if (currentRequests.size() < capacity) {
+                currentRequests.putRequest(request);
+            }
+            else {
+                request.next = null;
+                if (leftBehind == null) {
+                    leftBehind = new ArrayList<>();
+                }
+                leftBehind.add(request);
+            }
+            request = next;
+        }
+        if (leftBehind != null) {
+            elevator.leftBehind(leftBehind);
+        }
+        return true;
+    }
+
+    // tells the building when the car fills up or has room again. riders plus waiting calls count against capacity,
+    // so a car is not promised more people than it could carry at once
+    private void loadChanged() {
+        boolean nowFull = size() >= capacity;
+        if (nowFull != full) {
+            full = nowFull;
+            elevator.fullChanged(nowFull);
+        }
+    }
+
+    // the car takes up status from here. returns it
+    private ElevatorStatus moved(ElevatorStatus status) {
+        this.status = status;
+        loadChanged();
+        publish();
+        return status;
+    }
+
+    private void publish() {
+        long[] upTo = upCalls.copyAllDestinations();
+        long[] downTo = downCalls.copyAllDestinations();
+        currentRequests.addDropOffs(upTo, ElevatorStatus.UP);
+        currentRequests.addDropOffs(downTo, ElevatorStatus.DOWN);
+        elevator.publish(new ElevatorSnapshot(floor, status, size(), currentRequests.size(), capacity,
+                lowestStop(floor), highestStop(floor), parkFloor, minFloor, upTo, downTo));
+    }
+
+    private void doorsOpened(int floor) {
+        if (EventLog.ENABLED) {
+            EventLog.record(clock.currentTimeMillis(), EventLog.Type.DOORS, elevator.getEventSource(), floor, 0, 0);
         }
+        stopped = true;
     }
 }
@@ -0,0 +1,182 @@
+package elevatorsystem;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongBinaryOperator;
+
+// elevators in service, by status and floor. each indexed status keeps one bitset of car slots per floor, from
+// minFloor to maxFloor, so finding the nearest car is a scan over a few words with no allocation and no locks.
+// only an elevator's own step files it, so where each car is filed is single-writer state. a car that moves is set
+// at its new position before it is cleared from the old one: readers may briefly see it twice, but never not at all.
+// cars with no room for more passengers are masked out of every lookup until they have room again
+class ElevatorIndex {
+
+    private static final int NOT_FILED = -1;
+    static final long NONE = Long.MIN_VALUE;
+    private static final LongBinaryOperator OR = (a, b) -> a | b;
+    private static final LongBinaryOperator AND_NOT = (a, b) -> a & ~b;
+
+    private final int minFloor;
+    private final int maxFloor;
+    private final int words; // longs per floor
+    private final AtomicLongArray[] byStatus = new AtomicLongArray[ElevatorStatus.values().length];
+    private final Elevator[] bySlot;
+    private final int[] filedFloor;
+    private final int[] filedStatus;
+    private final AtomicLongArray full; // slots of cars at capacity, set and cleared by any thread
+
+    ElevatorIndex(int min_floor, int max_floor, List<Elevator> elevators) {
+        this(min_floor, max_floor, elevators.size());
+        for (Elevator e : elevators) {
+            bySlot[e.getSlot()] = e;
+        }
+    }
+
+    // slots with no Elevator behind them, filed through place(slot, status, floor) as BulkSimulation does
+    ElevatorIndex(int min_floor, int max_floor, int size) {
+        minFloor = min_floor;
+        maxFloor = max_floor;
+        words = (size + 63) >>> 6;
+        int floors = max_floor - min_floor + 1;
+        byStatus[ElevatorStatus.UP.ordinal()] = new AtomicLongArray(floors * words);
+        byStatus[ElevatorStatus.DOWN.ordinal()] = new AtomicLongArray(floors * words);
+        byStatus[ElevatorStatus.STATIONARY.ordinal()] = new AtomicLongArray(floors * words);
+        full = new AtomicLongArray(words);
+        bySlot = new Elevator[size];
+        filedFloor = new int[size];
+        filedStatus = new int[size];
+        Arrays.fill(filedStatus, NOT_FILED);
+    }
+
+    // files the elevator under its current status and floor in one move. returns true if it was not already there
+    boolean place(Elevator elevator) {
+        return place(elevator.getSlot(), elevator.getCurrentStatus(), elevator.getCurrentFloor());
+    }
+
+    boolean place(int slot, ElevatorStatus elevator_status, int floor) {
+        int status = elevator_status.ordinal();
+        int oldStatus = filedStatus[slot];
+        int oldFloor = filedFloor[slot];
+        if (oldStatus == status && oldFloor == floor) {
+            return false;
+        }
+        if (byStatus[status] != null) {
+            byStatus[status].accumulateAndGet(word(floor, slot), bit(slot), OR);
+            filedStatus[slot] = status;
+            filedFloor[slot] = floor;
+        }
+        else {
+            filedStatus[slot] = NOT_FILED; // busy elevators cannot take new requests
+        }
+        if (oldStatus != NOT_FILED) {
+            byStatus[oldStatus].accumulateAndGet(word(oldFloor, slot), bit(slot), AND_NOT);
+        }
+        return true;
+    }
+
+    // slot of the nearest elevator that can take a request from floor going in direction type: stationary
+    // anywhere, or moving towards floor in that direction. on equal distance the stationary one wins. -1 if none
+    int nearest(int floor, ElevatorStatus type) {
+        long stationary = closestStationary(floor);
+        long moving = closestMoving(floor, type);
+        if (stationary == NONE || moving == NONE) {
+            return stationary != NONE ? slot(stationary) : moving != NONE ? slot(moving) : -1;
+        }
+        int ds = Math.abs(floor(stationary) - floor);
+        int dm = Math.abs(floor(moving) - floor);
+        return ds <= dm ? slot(stationary) : slot(moving);
+    }
+
+    // closest stationary elevator as pack(floor, slot), or NONE
+    long closestStationary(int floor) {
+        AtomicLongArray stationary = byStatus[ElevatorStatus.STATIONARY.ordinal()];
+        for (int d = 0; floor + d <= maxFloor || floor - d >= minFloor; d++) {
+            int slot = firstAt(stationary, floor + d);
+            if (slot >= 0) {
+                return pack(floor + d, slot);
+            }
+            slot = d > 0 ? firstAt(stationary, floor - d) : -1;
+            if (slot >= 0) {
+                return pack(floor - d, slot);
+            }
+        }
+        return NONE;
+    }
+
+    // closest elevator moving towards floor in the given direction as pack(floor, slot), or NONE. a car level with
+    // the floor has already gone past it
+    long closestMoving(int floor, ElevatorStatus type) {
+        if (type == ElevatorStatus.UP) { //only elevators going up can take it
+            AtomicLongArray up = byStatus[ElevatorStatus.UP.ordinal()];
+            for (int f = floor - 1; f >= minFloor; f--) {
+                int slot = firstAt(up, f);
+                if (slot >= 0) {
+                    return pack(f, slot);
+                }
+            }
+        }
+        else { // only elevators going down can take it
+            AtomicLongArray down = byStatus[ElevatorStatus.DOWN.ordinal()];
+            for (int f = floor + 1; f <= maxFloor; f++) {
+                int slot = firstAt(down, f);
+                if (slot >= 0) {
+                    return pack(f, slot);
+                }
+            }
+        }
+        return NONE;
+    }
+
+    void setFull(int slot, boolean isFull) {
+        if (isFull) {
+            full.accumulateAndGet(slot >>> 6, bit(slot), OR);
+        }
+        else {
+            full.accumulateAndGet(slot >>> 6, bit(slot), AND_NOT);
+        }
+    }
+
+    Elevator elevator(int slot) {
+        return bySlot[slot];
+    }
+
+    int size() {
+        return bySlot.length;
+    }
+
+    static long pack(int floor, int slot) {
+        return ((long) floor << 32) | slot;
+    }
+
+    static int floor(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    static int slot(long packed) {
+        return (int) packed;
+    }
+
+    // lowest slot with room filed at floor, or -1
+    private int firstAt(AtomicLongArray bits, int floor) {
+        if (floor < minFloor || floor > maxFloor) {
+            return -1;
+        }
+        int base = (floor - minFloor) * words;
+        for (int w = 0; w < words; w++) {
+            long word = bits.get(base + w) & ~full.get(w);
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return -1;
+    }
+
+    private int word(int floor, int slot) {
+        return (floor - minFloor) * words + (slot >>> 6);
+    }
+
+    private static long bit(int slot) {
+        return 1L << (slot & 63);
+    }
+}
@@ -1,22 +1,35 @@
 package elevatorsystem;
 
-import java.util.Set;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 
+// riders on board, by the floor they get off at. one intrusive list of requests per floor from minFloor to
+// maxFloor, plus a bitset of floors where anyone gets off, so the check made on every floor a car passes is a
+// single bit test with no boxing and no allocation
 public class ElevatorMap {
 
-    private final Map<Integer, Set<ElevatorRequest>> map = new HashMap<>();
+    private final int minFloor;
+    private final ElevatorRequest[] heads;
+    private final long[] dropOffs;
+    private final long[] upDropOffs;   // floors where a rider going up gets off
+    private final long[] downDropOffs;
 
     private int numberOfRequests = 0;
 
+    public ElevatorMap(int min_floor, int max_floor) {
+        minFloor = min_floor;
+        heads = new ElevatorRequest[max_floor - min_floor + 1];
+        dropOffs = new long[(heads.length + 63) >>> 6];
+        upDropOffs = new long[dropOffs.length];
+        downDropOffs = new long[dropOffs.length];
+    }
+
     public void putRequest(ElevatorRequest request) {
-        int floor = request.getTo();
-        if (!map.containsKey(floor)) {
-            map.put(floor, new HashSet<>());
-        }
-        map.get(floor).add(request);
+        int i = request.getTo() - minFloor;
+        request.board();
+        request.next = heads[i];
+        heads[i] = request;
+        dropOffs[i >>> 6] |= 1L << i;
+        (request.getType() == ElevatorStatus.UP ? upDropOffs : downDropOffs)[i >>> 6] |= 1L << i;
         numberOfRequests ++;
     }
 
@@ -24,14 +37,74 @@ public class ElevatorMap {
         return numberOfRequests == 0;
     }
 
-    public boolean completeRequests(int floor) {
-        Set<ElevatorRequest> set = map.getOrDefault(floor, new HashSet<>());
-        boolean containsRequests = set.size() != 0;
-        set.forEach(request -> {
-            request.complete();
+    public int size() {
+        return numberOfRequests;
+    }
+
+    // whether anyone gets off at floor
+    public boolean hasDropOff(int floor) {
+        int i = floor - minFloor;
+        return i >= 0 && i < heads.length && (dropOffs[i >>> 6] & (1L << i)) != 0;
+    }
+
+    // whether a rider going in direction type gets off at floor
+    public boolean hasDropOff(int floor, ElevatorStatus type) {
+        int i = floor - minFloor;
+        long[] bits = type == ElevatorStatus.UP ? upDropOffs : downDropOffs;
+        return i >= 0 && i < heads.length && (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    // the drop off bitset, bit i for floor minFloor + i
+    long[] copyDropOffs() {
+        return dropOffs.clone();
+    }
+
+    // sets the bits of floors where a rider going in direction type gets off
+    void addDropOffs(long[] bits, ElevatorStatus type) {
+        long[] typed = type == ElevatorStatus.UP ? upDropOffs : downDropOffs;
+        for (int w = 0; w < typed.length; w++) {
+            bits[w] |= typed[w];
+        }
+    }
+
+    // lowest and highest drop off floors, or fallback when there are none
+    public int lowestFloor(int fallback) {
+        for (int w = 0; w < dropOffs.length; w++) {
+            if (dropOffs[w] != 0) {
+                return Math.min(fallback, minFloor + (w << 6) + Long.numberOfTrailingZeros(dropOffs[w]));
+            }
+        }
+        return fallback;
+    }
+
+    public int highestFloor(int fallback) {
+        for (int w = dropOffs.length - 1; w >= 0; w--) {
+            if (dropOffs[w] != 0) {
+                return Math.max(fallback, minFloor + (w << 6) + 63 - Long.numberOfLeadingZeros(dropOffs[w]));
+            }
+        }
+        return fallback;
+    }
+
+    // takes everyone getting off at floor out of the car and adds them to arrived, for the caller to complete once it
+    // has let go of any lock. returns whether there was anyone
+    public boolean takeArrivals(int floor, List<ElevatorRequest> arrived) {
+        if (!hasDropOff(floor)) {
+            return false;
+        }
+        int i = floor - minFloor;
+        ElevatorRequest request = heads[i];
+        heads[i] = null;
+        dropOffs[i >>> 6] &= ~(1L << i);
+        upDropOffs[i >>> 6] &= ~(1L << i);
+        downDropOffs[i >>> 6] &= ~(1L << i);
+        while (request != null) {
+            ElevatorRequest next = request.next;
+            request.next = null;
+            arrived.add(request);
             numberOfRequests --;
-        });
-        map.remove(floor);
-        return containsRequests;
+            request = next;
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,46 @@
 package elevatorsystem;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 public class ElevatorRequest {
 
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private final long id; // tells apart passengers making the same trip
     private final int from;
     private final int to;
     private final int min_floor;
     private final int max_floor;
     private final ElevatorStatus type;
-    private ElevatorRequestStatus status = ElevatorRequestStatus.WAITING;
+    private final Building building;
+    // moved on by whichever thread dispatches or drops off the passenger, each step happens exactly once
+    private final AtomicReference<ElevatorRequestStatus> status = new AtomicReference<>(ElevatorRequestStatus.WAITING);
+    private volatile boolean awaited = false; // someone is blocked in awaitCompletion
+    private final CompletableFuture<ElevatorRequest> processed = new CompletableFuture<>();
+    private final CompletableFuture<ElevatorRequest> completed = new CompletableFuture<>();
+    ElevatorRequest next; // link in the ElevatorMap list of the car carrying this request
+
+    // lifecycle timestamps from the building's clock, -1 until reached
+    private final long createdAt;
+    private volatile long processedAt = -1;
+    private volatile long boardedAt = -1;
+    private volatile long completedAt = -1;
 
     enum ElevatorRequestStatus {
         WAITING, PROCESSED, COMPLETED
     }
 
     public ElevatorRequest(int fromFloor, int toFloor, Building building) {
+        this(sequence.incrementAndGet(), fromFloor, toFloor, building.clock().currentTimeMillis(), building);
+    }
+
+    // a request from before a restart, see BuildingJournal. keeps its ID
+    ElevatorRequest(long id, int fromFloor, int toFloor, long created_at, Building building) {
+        this.id = id;
+        this.building = building;
+        createdAt = created_at;
         type = fromFloor > toFloor ? ElevatorStatus.DOWN : ElevatorStatus.UP;
         min_floor = building.minFloor();
         max_floor = building.maxFloor();
@@ -36,38 +63,114 @@ public class ElevatorRequest {
         return type;
     }
 
+    public String getBuildingID() {
+        return building.getID();
+    }
+
+    long getID() {
+        return id;
+    }
+
+    // numbers new requests after every ID up to last, so they cannot clash with restored ones
+    static void reserveIDs(long last) {
+        sequence.accumulateAndGet(last, Math::max);
+    }
+
     public void process() {
-        if (status == ElevatorRequestStatus.WAITING) {
-            status = ElevatorRequestStatus.PROCESSED;
+        long now = building.clock().currentTimeMillis();
+        if (status.compareAndSet(ElevatorRequestStatus.WAITING, ElevatorRequestStatus.PROCESSED)) {
+            processedAt = now;
+            processed.complete(this);
+            building.requestProcessed(this);
         }
     }
 
     public boolean isProcessed() {
-        return status == ElevatorRequestStatus.PROCESSED || status == ElevatorRequestStatus.COMPLETED;
+        return status.get() != ElevatorRequestStatus.WAITING;
+    }
+
+    // the passenger got into the car. only the first boarding counts
+    void board() {
+        if (boardedAt < 0) {
+            boardedAt = building.clock().currentTimeMillis();
+            building.requestBoarded(this);
+        }
+    }
+
+    // puts back the state a restored request had already reached. must be called before anyone else sees it
+    void restore(long processed_at, long boarded_at) {
+        if (processed_at >= 0) {
+            processedAt = processed_at;
+            status.set(ElevatorRequestStatus.PROCESSED);
+            processed.complete(this);
+        }
+        boardedAt = boarded_at;
     }
 
     public void complete() {
-        if (status == ElevatorRequestStatus.PROCESSED || status == ElevatorRequestStatus.COMPLETED) {
-            status = ElevatorRequestStatus.COMPLETED;
+        long now = building.clock().currentTimeMillis();
+        if (status.compareAndSet(ElevatorRequestStatus.PROCESSED, ElevatorRequestStatus.COMPLETED)) {
+            completedAt = now;
+            if (boardedAt < 0) {
+                boardedAt = now;
+            }
+            building.metrics().requestCompleted(this);
+            completed.complete(this);
+            building.requestCompleted(this);
+            if (awaited) {
+                synchronized (this) {
+                    building.clock().signalAll(this);
+                }
+            }
         }
-        else {
+        else if (status.get() != ElevatorRequestStatus.COMPLETED) {
             throw new RuntimeException("Not processed yet");
         }
     }
 
+    // blocks until the passenger has reached the destination floor. waits through the building's clock, so a
+    // simulation party can call it without holding virtual time still
+    public void awaitCompletion() throws InterruptedException {
+        synchronized (this) {
+            awaited = true;
+            while (!isComplete()) {
+                building.clock().await(this, 0);
+            }
+        }
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getProcessedAt() {
+        return processedAt;
+    }
+
+    public long getBoardedAt() {
+        return boardedAt;
+    }
+
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
     public boolean isComplete() {
-        return status == ElevatorRequestStatus.COMPLETED;
+        return status.get() == ElevatorRequestStatus.COMPLETED;
     }
 
-    ElevatorRequest(int from) {
-        this.from = from;
-        this.to = -1;
-        min_floor = -1;
-        max_floor = -1;
-        type = ElevatorStatus.DOWN;
+    // completes once an elevator has been assigned
+    public CompletableFuture<ElevatorRequest> whenProcessed() {
+        return processed;
+    }
 
+    // completes once the passenger has reached the destination floor. dependent actions added without an executor
+    // run on the elevator's step holding no locks, so they may submit the next request, but the car waits for them
+    public CompletableFuture<ElevatorRequest> whenCompleted() {
+        return completed;
     }
 
 
 
+
 }
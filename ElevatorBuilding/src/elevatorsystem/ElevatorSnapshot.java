@@ -0,0 +1,87 @@
+package elevatorsystem;
+
+// one car's state at an instant: where it is, which way it is going and a summary of its stop plan. snapshots never
+// change once made. each car publishes a new one whenever its position or plan changes, so any thread can read a
+// consistent view of it with a single volatile read and no locks
+public final class ElevatorSnapshot {
+
+    private final int floor;
+    private final ElevatorStatus status;
+    private final int queued;      // requests waiting to be picked up plus riders on board
+    private final int load;        // riders on board
+    private final int capacity;
+    private final int lowestStop;  // floor if nothing to visit below it
+    private final int highestStop; // floor if nothing to visit above it
+    private final int parkingFloor;
+    // where everyone queued or on board is going, by direction. bit i for floor minFloor + i, never written after
+    // the snapshot is made
+    private final int minFloor;
+    private final long[] upDestinations;
+    private final long[] downDestinations;
+
+    ElevatorSnapshot(int floor, ElevatorStatus status, int queued, int load, int capacity, int lowest_stop,
+                     int highest_stop, int parking_floor, int min_floor, long[] up_destinations,
+                     long[] down_destinations) {
+        this.floor = floor;
+        this.status = status;
+        this.queued = queued;
+        this.load = load;
+        this.capacity = capacity;
+        this.lowestStop = lowest_stop;
+        this.highestStop = highest_stop;
+        this.parkingFloor = parking_floor;
+        this.minFloor = min_floor;
+        this.upDestinations = up_destinations;
+        this.downDestinations = down_destinations;
+    }
+
+    public int floor() {
+        return floor;
+    }
+
+    public ElevatorStatus status() {
+        return status;
+    }
+
+    public int queued() {
+        return queued;
+    }
+
+    public int load() {
+        return load;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean hasRoom() {
+        return queued < capacity;
+    }
+
+    public int lowestStop() {
+        return lowestStop;
+    }
+
+    public int highestStop() {
+        return highestStop;
+    }
+
+    // where the car is heading to wait for calls, or Fleet.NOT_PARKING
+    public int parkingFloor() {
+        return parkingFloor;
+    }
+
+    // whether anyone already queued or on board is going to floor to in direction type
+    public boolean servesDestination(int to, ElevatorStatus type) {
+        int i = to - minFloor;
+        long[] bits = type == ElevatorStatus.UP ? upDestinations : downDestinations;
+        return i >= 0 && i < bits.length << 6 && (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return status + "@" + floor + " q" + queued + " load " + load + "/" + capacity + " stops " + lowestStop + ".."
+                + highestStop;
+    }
+}
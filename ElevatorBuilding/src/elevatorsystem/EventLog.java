@@ -0,0 +1,219 @@
+package elevatorsystem;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// fixed-schema event log for the simulation hot paths. recording an event writes a few primitives into a lock-free
+// ring buffer and never waits: when the buffer is full the event is dropped and counted. one background thread
+// formats the events and writes them to ./logs/events.log. ENABLED is a compile-time style switch
+// (-Delevatorsystem.events=false). callers test it before working out an event's fields, the clock reading
+// included, so with events off the JIT removes the whole call site
+final class EventLog {
+
+    static final boolean ENABLED = !"false".equals(System.getProperty("elevatorsystem.events"));
+
+    enum Type {
+        AT_FLOOR,      // a = floor, b = status ordinal
+        STATUS,        // a = status ordinal
+        DOORS,         // a = floor
+        DISPATCH,      // a = from, b = to, c = car source
+        DISPATCH_GROUP // a = people, b = from, c = car source
+    }
+
+    private static final Type[] TYPES = Type.values();
+    private static final ElevatorStatus[] STATUSES = ElevatorStatus.values();
+    private static final int FIELDS = 6; // time, type, source, a, b, c
+    private static final EventLog INSTANCE = ENABLED ? new EventLog(1 << 16, Paths.get("logs", "events.log")) : null;
+
+    private final int mask;
+    private final long[] entries;
+    private final AtomicLongArray published; // sequence + 1 once an entry is fully written
+    private final AtomicLong head = new AtomicLong(); // next sequence to claim
+    private volatile long tail = 0; // next sequence to write out
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<String> sources = new ArrayList<>(); // guarded by itself, with ids
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Path file;
+
+    // writer side, guarded by writing
+    private final Object writing = new Object();
+    private Writer out;
+    private boolean opened = false;
+    private volatile boolean stopping = false;
+
+    private EventLog(int capacity, Path file) {
+        mask = capacity - 1;
+        entries = new long[capacity * FIELDS];
+        published = new AtomicLongArray(capacity);
+        this.file = file;
+        Thread writer = new Thread(this::write, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drainAndStop));
+    }
+
+    // returns the id to record events from name under. a name seen before gets its old id back, so rebuilding a
+    // building with the same ids does not grow the table
+    static int source(String name) {
+        if (!ENABLED) {
+            return -1;
+        }
+        synchronized (INSTANCE.sources) {
+            Integer id = INSTANCE.ids.get(name);
+            if (id == null) {
+                id = INSTANCE.sources.size();
+                INSTANCE.sources.add(name);
+                INSTANCE.ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    static void record(long time, Type type, int source, int a, int b, int c) {
+        if (ENABLED) {
+            INSTANCE.publish(time, type, source, a, b, c);
+        }
+    }
+
+    static long droppedEvents() {
+        return ENABLED ? INSTANCE.dropped.get() : 0;
+    }
+
+    private void publish(long time, Type type, int source, int a, int b, int c) {
+        long seq;
+        do {
+            seq = head.get();
+            if (seq - tail > mask) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(seq, seq + 1));
+        int i = (int) (seq & mask);
+        int base = i * FIELDS;
+        entries[base] = time;
+        entries[base + 1] = type.ordinal();
+        entries[base + 2] = source;
+        entries[base + 3] = a;
+        entries[base + 4] = b;
+        entries[base + 5] = c;
+        published.lazySet(i, seq + 1);
+    }
+
+    private void write() {
+        StringBuilder line = new StringBuilder(128);
+        while (!stopping) {
+            int written;
+            synchronized (writing) {
+                written = writeAvailable(line);
+                if (written == 0) {
+                    flush();
+                }
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+    }
+
+    private void drainAndStop() {
+        stopping = true;
+        synchronized (writing) {
+            writeAvailable(new StringBuilder(128));
+            flush();
+        }
+    }
+
+    // must hold writing. returns how many events were consumed
+    private int writeAvailable(StringBuilder line) {
+        open();
+        int count = 0;
+        long seq = tail;
+        while (published.get((int) (seq & mask)) == seq + 1) {
+            int base = (int) (seq & mask) * FIELDS;
+            if (out != null) {
+                line.setLength(0);
+                format(line, entries[base], TYPES[(int) entries[base + 1]], (int) entries[base + 2],
+                        (int) entries[base + 3], (int) entries[base + 4], (int) entries[base + 5]);
+                try {
+                    out.append(line);
+                }
+                catch (IOException exception) {
+                    // lost, like a dropped event
+                }
+            }
+            seq++;
+            tail = seq; // frees the entry for producers
+            count++;
+        }
+        return count;
+    }
+
+    // must hold writing
+    private void open() {
+        if (!opened) {
+            opened = true;
+            try {
+                Files.createDirectories(file.getParent());
+                out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            catch (IOException exception) {
+                // keep consuming so producers never fill up, the events just go nowhere
+            }
+        }
+    }
+
+    // must hold writing
+    private void flush() {
+        if (out != null) {
+            try {
+                out.flush();
+            }
+            catch (IOException exception) {
+                // nothing to do, the next flush tries again
+            }
+        }
+    }
+
+    private void format(StringBuilder line, long time, Type type, int source, int a, int b, int c) {
+        line.append(time).append(' ').append(type).append(' ');
+        switch (type) {
+            case AT_FLOOR:
+                line.append("Elevator ").append(name(source)).append(" at floor ").append(a)
+                        .append(" with status ").append(STATUSES[b]);
+                break;
+            case STATUS:
+                line.append("Elevator ").append(name(source)).append(" now has status ").append(STATUSES[a]);
+                break;
+            case DOORS:
+                line.append("Elevator ").append(name(source)).append(" OPENING/CLOSING at floor ").append(a);
+                break;
+            case DISPATCH:
+                line.append(name(source)).append(": moving floors from ").append(a).append(" to ").append(b)
+                        .append(". Best elevator is ").append(name(c));
+                break;
+            case DISPATCH_GROUP:
+                line.append(name(source)).append(": moving ").append(a).append(" people from floor ").append(b)
+                        .append(". Best elevator is ").append(name(c));
+                break;
+            default:
+                line.append(source).append(' ').append(a).append(' ').append(b).append(' ').append(c);
+        }
+        line.append(System.lineSeparator());
+    }
+
+    private String name(int source) {
+        synchronized (sources) {
+            return source >= 0 && source < sources.size() ? sources.get(source) : "?";
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package elevatorsystem;
+
+public enum ExecutionMode {
+    THREAD_PER_ELEVATOR, // each elevator loops on its own simulation thread
+    SHARED_SCHEDULER     // elevators are tasks on the clock's shared scheduler, no thread per elevator
+}
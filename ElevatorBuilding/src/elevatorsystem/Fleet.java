@@ -0,0 +1,108 @@
+package elevatorsystem;
+
+// read-only view of a building's elevators for dispatch strategies. cars are addressed by slot, 0 to size() - 1.
+// readings come from each car's latest snapshot and take no locks, so a car may already have moved on by the time
+// the choice is acted upon. read snapshot(slot) once to get several figures that belong together. only plan(slot)
+// locks, see below
+public final class Fleet {
+
+    public static final int NOT_PARKING = ElevatorBlockingQueueV2.NOT_PARKING;
+
+    private final ElevatorIndex index;
+    private final int minFloor;
+    private final int maxFloor;
+
+    Fleet(ElevatorIndex index, int min_floor, int max_floor) {
+        this.index = index;
+        minFloor = min_floor;
+        maxFloor = max_floor;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public String id(int slot) {
+        return index.elevator(slot).getID();
+    }
+
+    public ElevatorSnapshot snapshot(int slot) {
+        return index.elevator(slot).snapshot();
+    }
+
+    public int floor(int slot) {
+        return snapshot(slot).floor();
+    }
+
+    public ElevatorStatus status(int slot) {
+        return snapshot(slot).status();
+    }
+
+    // requests waiting to be picked up plus riders on board
+    public int queuedRequests(int slot) {
+        return snapshot(slot).queued();
+    }
+
+    // passengers on board
+    public int load(int slot) {
+        return snapshot(slot).load();
+    }
+
+    public int capacity(int slot) {
+        return snapshot(slot).capacity();
+    }
+
+    // whether the car can be promised another passenger: riders plus queued calls are below its capacity
+    public boolean hasRoom(int slot) {
+        return snapshot(slot).hasRoom();
+    }
+
+    // floor the car is heading to wait at while it has no calls, or NOT_PARKING
+    public int parkingFloor(int slot) {
+        return snapshot(slot).parkingFloor();
+    }
+
+    public int lowestStop(int slot) {
+        return snapshot(slot).lowestStop();
+    }
+
+    public int highestStop(int slot) {
+        return snapshot(slot).highestStop();
+    }
+
+    // a detached copy of the car's stop plan. unlike everything else here it takes the car's queue lock, for the few
+    // array copies it makes
+    StopPlan plan(int slot) {
+        return index.elevator(slot).queue().plan();
+    }
+
+    // whether the car already has someone queued or riding to floor to in direction type
+    public boolean servesDestination(int slot, int to, ElevatorStatus type) {
+        return snapshot(slot).servesDestination(to, type);
+    }
+
+    // slot of the nearest stationary car or car moving towards floor in direction type with room, or -1
+    public int nearest(int floor, ElevatorStatus type) {
+        return index.nearest(floor, type);
+    }
+
+    public int minFloor() {
+        return minFloor;
+    }
+
+    public int maxFloor() {
+        return maxFloor;
+    }
+
+    public long millisBetweenFloors() {
+        return Elevator.milliseconds_between_floors;
+    }
+
+    public long millisOpeningClosingDoors() {
+        return Elevator.milliseconds_opening_closing_doors;
+    }
+
+    Elevator elevator(int slot) {
+        return index.elevator(slot);
+    }
+}
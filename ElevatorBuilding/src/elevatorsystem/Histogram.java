@@ -0,0 +1,134 @@
+package elevatorsystem;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// lock-free log-linear histogram of non-negative longs. values below 32 get a bucket each, above that every power
+// of two is split into 16 buckets, so a percentile is within about 6% of the true value whatever its magnitude.
+// recording is a couple of atomic adds and never allocates
+public final class Histogram {
+
+    private static final int LINEAR = 32;
+    private static final int SUB_BUCKETS = 16;
+    private static final int BUCKETS = LINEAR + (63 - 5) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucket(value));
+        total.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    // upper bound of the bucket holding the given percentile (0 to 100), or 0 if nothing has been recorded.
+    // concurrent records may or may not be counted
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highest(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // adds everything tally has counted and empties it
+    void addAll(Tally tally) {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (tally.counts[i] != 0) {
+                counts.addAndGet(i, tally.counts[i]);
+                tally.counts[i] = 0;
+            }
+        }
+        total.add(tally.total);
+        sum.add(tally.sum);
+        max.accumulate(tally.max);
+        tally.total = 0;
+        tally.sum = 0;
+        tally.max = 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    static int bucket(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // 5 and up
+        int shift = exponent - 4;
+        return LINEAR + (exponent - 5) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // largest value that falls in bucket
+    static long highest(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int k = bucket - LINEAR;
+        int shift = k / SUB_BUCKETS + 1;
+        long lowest = (long) (k % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // the same buckets counted by one thread in plain fields, for loops that record too often for an atomic add
+    // per value. folded into a histogram with addAll
+    static final class Tally {
+        private final long[] counts = new long[BUCKETS];
+        private long total = 0;
+        private long sum = 0;
+        private long max = 0;
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            counts[bucket(value)]++;
+            total++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        long count() {
+            return total;
+        }
+    }
+}
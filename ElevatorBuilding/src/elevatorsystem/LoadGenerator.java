@@ -0,0 +1,74 @@
+package elevatorsystem;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// plays a traffic source into a started building at the times it asks for, waits until every passenger has
+// arrived and reports throughput and latency. trips are read one at a time and nothing is kept per passenger, so
+// traces of millions of trips run in constant memory. the generator should be the building's only traffic
+public class LoadGenerator {
+
+    private final Building building;
+
+    public LoadGenerator(Building building) {
+        this.building = building;
+    }
+
+    // runs on the calling thread, which takes part in the building's clock for the duration
+    public LoadReport run(TrafficSource source) throws IOException, InterruptedException {
+        SimulationClock clock = building.clock();
+        Histogram hallWait = new Histogram();
+        Histogram ride = new Histogram();
+        AtomicLong outstanding = new AtomicLong();
+        Object done = new Object();
+        RequestListener listener = new RequestListener() {
+            @Override
+            public void completed(ElevatorRequest request) {
+                hallWait.record(request.getBoardedAt() - request.getCreatedAt());
+                ride.record(request.getCompletedAt() - request.getBoardedAt());
+                if (outstanding.decrementAndGet() == 0) {
+                    synchronized (done) {
+                        clock.signalAll(done);
+                    }
+                }
+            }
+        };
+        long trips = 0;
+        long skipped = 0;
+        long wallStart = System.nanoTime();
+        building.addRequestListener(listener);
+        clock.register();
+        try {
+            long start = clock.currentTimeMillis();
+            for (Trip trip = source.next(); trip != null; trip = source.next()) {
+                trips++;
+                long delay = start + trip.getTime() - clock.currentTimeMillis();
+                if (delay > 0) {
+                    clock.sleep(delay);
+                }
+                ElevatorRequest request;
+                try {
+                    request = building.makeRequest(trip.getFrom(), trip.getTo());
+                }
+                catch (RuntimeException e) {
+                    skipped++; // a trip that starts and ends on the same floor of this building
+                    continue;
+                }
+                outstanding.incrementAndGet();
+                building.submit(request);
+            }
+            synchronized (done) {
+                while (outstanding.get() > 0) {
+                    clock.await(done, 0);
+                }
+            }
+            return new LoadReport(trips, skipped, clock.currentTimeMillis() - start, System.nanoTime() - wallStart,
+                    hallWait, ride, building.metrics().dispatchNanos());
+        }
+        finally {
+            clock.unregister();
+            building.removeRequestListener(listener);
+            source.close();
+        }
+    }
+}
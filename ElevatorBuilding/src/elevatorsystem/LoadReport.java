@@ -0,0 +1,85 @@
+package elevatorsystem;
+
+// outcome of a LoadGenerator run. simulated times follow the building's clock, wall time is real
+public final class LoadReport {
+
+    private final long trips;
+    private final long skipped;
+    private final long simulatedMillis;
+    private final long wallNanos;
+    private final Histogram hallWait;
+    private final Histogram ride;
+    private final Histogram dispatchNanos;
+
+    LoadReport(long trips, long skipped, long simulated_millis, long wall_nanos, Histogram hallWait, Histogram ride,
+               Histogram dispatchNanos) {
+        this.trips = trips;
+        this.skipped = skipped;
+        this.simulatedMillis = simulated_millis;
+        this.wallNanos = wall_nanos;
+        this.hallWait = hallWait;
+        this.ride = ride;
+        this.dispatchNanos = dispatchNanos;
+    }
+
+    public long trips() {
+        return trips;
+    }
+
+    // trips the building could not take, such as ones that start and end on the same floor
+    public long skipped() {
+        return skipped;
+    }
+
+    public long completed() {
+        return ride.count();
+    }
+
+    public long simulatedMillis() {
+        return simulatedMillis;
+    }
+
+    public long wallNanos() {
+        return wallNanos;
+    }
+
+    // passengers delivered per simulated hour
+    public double passengersPerHour() {
+        return simulatedMillis == 0 ? 0 : completed() * 3_600_000.0 / simulatedMillis;
+    }
+
+    // passengers delivered per second of real time, how fast the simulator itself ran
+    public double passengersPerWallSecond() {
+        return wallNanos == 0 ? 0 : completed() * 1e9 / wallNanos;
+    }
+
+    public Histogram hallWait() {
+        return hallWait;
+    }
+
+    public Histogram ride() {
+        return ride;
+    }
+
+    // every dispatch decision the building has made, including ones before this run
+    public Histogram dispatchNanos() {
+        return dispatchNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d trips, %d skipped, %d completed in %d simulated ms (%.1f s wall)%n"
+                        + "throughput: %.0f passengers/simulated hour, %.0f passengers/wall second%n"
+                        + "hall wait ms: %s%n"
+                        + "ride ms:      %s%n"
+                        + "dispatch ns:  %s",
+                trips, skipped, completed(), simulatedMillis, wallNanos / 1e9,
+                passengersPerHour(), passengersPerWallSecond(),
+                percentiles(hallWait), percentiles(ride), percentiles(dispatchNanos));
+    }
+
+    private static String percentiles(Histogram h) {
+        return String.format("mean %.0f p50 %d p90 %d p99 %d p99.9 %d max %d", h.mean(), h.percentile(50),
+                h.percentile(90), h.percentile(99), h.percentile(99.9), h.max());
+    }
+}
@@ -1,5 +1,6 @@
 package elevatorsystem;
 
+import java.util.Arrays;
 import java.util.logging.FileHandler;
 import java.util.logging.Handler;
 import java.util.logging.Logger;
@@ -7,14 +8,18 @@ import java.util.logging.Level;
 import java.util.logging.SimpleFormatter;
 
 class LoggerSetup {
-    static void setUpLogger(Logger LOGGER, Level level) {
-        Handler fileHandler;
-        try {
-            fileHandler = new FileHandler("./logs/logfile.log");
-            SimpleFormatter simple = new SimpleFormatter();
-            fileHandler.setFormatter(simple);
+    // one handler for the whole process. a FileHandler per logger each takes its own lock file and file
+    private static Handler fileHandler;
 
-            LOGGER.addHandler(fileHandler);
+    static synchronized void setUpLogger(Logger LOGGER, Level level) {
+        try {
+            if (fileHandler == null) {
+                fileHandler = new FileHandler("./logs/logfile.log");
+                fileHandler.setFormatter(new SimpleFormatter());
+            }
+            if (!Arrays.asList(LOGGER.getHandlers()).contains(fileHandler)) {
+                LOGGER.addHandler(fileHandler);
+            }
         }
         catch (Exception exception ) {  }
         LOGGER.setLevel(level);
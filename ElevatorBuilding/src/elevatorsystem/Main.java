@@ -1,8 +1,14 @@
 package elevatorsystem;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -11,51 +17,366 @@ public class Main {
     public static void main(String[] args) {
         LoggerSetup.setUpLogger(LOGGER, Level.WARNING);
         System.out.println("Hello World!");
-        test1(1, 10, 100, Arrays.asList("E1", "E2", "E3"), 100);
+        if (args.length > 0) {
+            // replays a recorded trace: Main <trace.jsonl> [min floor] [max floor] [elevators]
+            int minFloor = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+            int maxFloor = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            int cars = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+            List<String> elevators = new ArrayList<>();
+            for (int i = 1; i <= cars; i++) {
+                elevators.add("E" + i);
+            }
+            VirtualClock clock = new VirtualClock();
+            try {
+                replay(clock, new TraceReader(Paths.get(args[0])), minFloor, maxFloor, elevators);
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            clock.shutdown();
+            return;
+        }
+        VirtualClock clock = new VirtualClock();
+        test1(clock, 1, 10, 100, Arrays.asList("E1", "E2", "E3"), 100);
+        clock.shutdown();
         //test2(1, 10, Arrays.asList("E1"));
+        //test3(new VirtualClock(), 1, 10, 1000, Arrays.asList("E1", "E2", "E3"), 100);
+        //test4(new VirtualClock(), 8, 1, 30, 200, Arrays.asList("E1", "E2", "E3", "E4"), 100);
+        //test5(1, 20, 10000, Arrays.asList("E1", "E2", "E3", "E4"), 42);
+        //test6(1, 20, 2000, Arrays.asList("E1", "E2", "E3", "E4"), 42);
+        //test7(new VirtualClock(), 500, 2000);
+        //test8(1, 20, 10000, Arrays.asList("E1", "E2", "E3", "E4"), 42);
+        //test9(1, 20, 2000, Arrays.asList("E1", "E2", "E3"), 42);
 
     }
     public static void test2(int minFloor, int maxFloor, List<String> elevators) {
         Building building = new Building("building1", elevators, minFloor, maxFloor);
+        building.start();
         building.moveFloors(building.makeRequest(3, 2));
         building.moveFloors(building.makeRequest(3, 1));
     }
 
     public static void test1(int minFloor, int maxFloor, int numberOfPeople, List<String> elevators, long waitBetweenEachRequest) {
-        Building building = new Building("building1", elevators, minFloor, maxFloor);
+        test1(SimulationClock.realTime(), minFloor, maxFloor, numberOfPeople, elevators, waitBetweenEachRequest);
+    }
+
+    public static void test1(SimulationClock clock, int minFloor, int maxFloor, int numberOfPeople, List<String> elevators,
+                             long waitBetweenEachRequest) {
+        Building building = new Building("building1", elevators, minFloor, maxFloor, clock);
+        building.start();
         ArrayList<Thread> threads = new ArrayList<>();
+        clock.register();
         for(int i = 0; i < numberOfPeople; i++) {
-            threads.add(new Thread(() -> {
+            Thread thread = clock.newThread(() -> {
                 int floor1 = (int) (Math.random() * maxFloor) + (minFloor);
                 int floor2 = (int) (Math.random() * maxFloor) + (minFloor);
                 while (floor1 == floor2) {
-                    floor2 = (int) (Math.random() * maxFloor);
+                    floor2 = (int) (Math.random() * maxFloor) + (minFloor);
                 }
                 ElevatorRequest req = building.makeRequest(floor1, floor2);
                 building.moveFloors(req);
-                while (!req.isComplete()) {
+                try {
+                    req.awaitCompletion(); // wait for person to reach their destination floor
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start(); // start right away, a created but unstarted thread would hold virtual time still
+            try {
+                clock.sleep(waitBetweenEachRequest); // add a delay between requests
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        clock.unregister();
+        // wait for each person to go to their floor. if building elevators work, all should terminate
+        threads.forEach(thread -> { try { thread.join();}
+        catch (InterruptedException ex) { System.out.println("interrupted-thread"); } });
+        System.out.println("DONE"); // all people reached their destinations
+        building.stop();
+    }
+
+    // same traffic as test1, but submitted asynchronously from one thread, with the elevators sharing the clock's
+    // scheduler instead of running a thread each
+    public static void test3(SimulationClock clock, int minFloor, int maxFloor, int numberOfPeople, List<String> elevators,
+                             long waitBetweenEachRequest) {
+        Building building = new Building("building1", elevators, minFloor, maxFloor, clock, ExecutionMode.SHARED_SCHEDULER);
+        building.start();
+        List<CompletableFuture<ElevatorRequest>> rides = new ArrayList<>();
+        clock.register();
+        for(int i = 0; i < numberOfPeople; i++) {
+            int floor1 = (int) (Math.random() * maxFloor) + (minFloor);
+            int floor2 = (int) (Math.random() * maxFloor) + (minFloor);
+            while (floor1 == floor2) {
+                floor2 = (int) (Math.random() * maxFloor) + (minFloor);
+            }
+            rides.add(building.submit(building.makeRequest(floor1, floor2)));
+            try {
+                clock.sleep(waitBetweenEachRequest); // add a delay between requests
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        clock.unregister();
+        CompletableFuture.allOf(rides.toArray(new CompletableFuture<?>[0])).join();
+        System.out.println("DONE"); // all people reached their destinations
+        System.out.println("hall wait ms " + building.metrics().getHallWaitMillis());
+        System.out.println("ride ms " + building.metrics().getRideMillis());
+        System.out.println("dispatch ns " + building.metrics().getDispatchNanos());
+        building.stop();
+        try {
+            building.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // one client thread per building, all submitting at once
+    public static void test4(SimulationClock clock, int numberOfBuildings, int minFloor, int maxFloor,
+                             int peoplePerBuilding, List<String> elevators, long waitBetweenEachRequest) {
+        Campus campus = new Campus(clock, ExecutionMode.SHARED_SCHEDULER);
+        for (int b = 0; b < numberOfBuildings; b++) {
+            campus.addBuilding("building" + (b + 1), elevators, minFloor, maxFloor);
+        }
+        campus.start();
+        List<Thread> threads = new ArrayList<>();
+        for (Building building : campus.buildings()) {
+            Thread thread = clock.newThread(() -> {
+                List<ElevatorRequest> rides = new ArrayList<>();
+                for (int i = 0; i < peoplePerBuilding; i++) {
+                    int floor1 = (int) (Math.random() * (maxFloor - minFloor + 1)) + minFloor;
+                    int floor2 = (int) (Math.random() * (maxFloor - minFloor + 1)) + minFloor;
+                    if (floor1 == floor2) {
+                        continue;
+                    }
+                    ElevatorRequest req = campus.makeRequest(building.getID(), floor1, floor2);
+                    campus.submit(req);
+                    rides.add(req);
                     try {
-                        Thread.sleep(3000); // wait for person to reach their destination floor
+                        clock.sleep(waitBetweenEachRequest);
                     }
                     catch (InterruptedException e) {
                         throw new RuntimeException(e);
                     }
                 }
-            }));
+                for (ElevatorRequest ride : rides) {
+                    try {
+                        ride.awaitCompletion();
+                    }
+                    catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
         }
-        threads.forEach(thread -> {
+        for (Thread thread : threads) {
             try {
-                Thread.sleep(waitBetweenEachRequest); // add a delay between requests
-                thread.start();
+                thread.join();
             }
-            catch (Exception e) {
+            catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
+        }
+        System.out.println(campus.status());
+        campus.stop();
+        try {
+            campus.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // a 60 floor tower: low rise locals to the sky lobby on 30, express cars from the lobby to the sky lobby, and
+    // high rise locals above it. trips between the halves change cars at the sky lobby
+    public static void test7(SimulationClock clock, int numberOfPeople, long waitBetweenEachRequest) {
+        ZonedBuilding tower = new ZonedBuilding("tower", clock, ExecutionMode.SHARED_SCHEDULER);
+        tower.addZone("low", Arrays.asList("L1", "L2", "L3", "L4"), 1, 30);
+        tower.addExpressZone("express", Arrays.asList("X1", "X2"), 1, 30);
+        tower.addZone("high", Arrays.asList("H1", "H2", "H3", "H4"), 30, 60);
+        tower.start();
+        long start = System.currentTimeMillis();
+        Thread thread = clock.newThread(() -> {
+            List<ZonedTrip> trips = new ArrayList<>();
+            for (int i = 0; i < numberOfPeople; i++) {
+                int floor1 = (int) (Math.random() * 60) + 1;
+                int floor2 = (int) (Math.random() * 60) + 1;
+                if (floor1 == floor2) {
+                    continue;
+                }
+                trips.add(tower.submit(floor1, floor2));
+                try {
+                    clock.sleep(waitBetweenEachRequest);
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            for (ZonedTrip trip : trips) {
+                try {
+                    trip.awaitCompletion();
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
         });
-        // wait for each person to go to their floor. if building elevators work, all should terminate
-        threads.forEach(thread -> { try { thread.join();}
-        catch (InterruptedException ex) { System.out.println("interrupted-thread"); } });
-        System.out.println("DONE"); // all people reached their destinations
+        thread.start();
+        try {
+            thread.join();
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        for (Building zone : tower.zones()) {
+            System.out.println(zone.getID() + " rides " + zone.metrics().ride().count() + " hall wait ms "
+                    + zone.metrics().hallWait().mean());
+        }
+        System.out.println("test7 ms " + (System.currentTimeMillis() - start) + " virtual " + clock.currentTimeMillis());
+        tower.stop();
+        try {
+            tower.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // the same seeded day of traffic through each pattern
+    public static void test5(int minFloor, int maxFloor, int numberOfPeople, List<String> elevators, long seed) {
+        for (TrafficProfile.Pattern pattern : TrafficProfile.Pattern.values()) {
+            VirtualClock clock = new VirtualClock();
+            System.out.println(pattern);
+            replay(clock, new TrafficProfile(pattern, seed, minFloor, maxFloor, numberOfPeople, 2000),
+                    minFloor, maxFloor, elevators);
+            clock.shutdown();
+        }
+    }
+
+    // light up-peak traffic, with idle cars left where they stop and then parked by forecast demand
+    public static void test6(int minFloor, int maxFloor, int numberOfPeople, List<String> elevators, long seed) {
+        for (boolean parking : new boolean[] {false, true}) {
+            VirtualClock clock = new VirtualClock();
+            System.out.println(parking ? "UP_PEAK parked" : "UP_PEAK");
+            replay(clock, new TrafficProfile(TrafficProfile.Pattern.UP_PEAK, seed, minFloor, maxFloor, numberOfPeople,
+                    30000), minFloor, maxFloor, elevators, parking);
+            clock.shutdown();
+        }
+    }
+
+    // the same seeded traffic through a threaded building on virtual time and through the bulk engine. both make
+    // the same dispatch and stop decisions, so their reports should match unless cars step in the same millisecond
+    public static void test8(int minFloor, int maxFloor, int numberOfPeople, List<String> elevators, long seed) {
+        for (TrafficProfile.Pattern pattern : TrafficProfile.Pattern.values()) {
+            VirtualClock clock = new VirtualClock();
+            System.out.println(pattern + " threaded");
+            replay(clock, new TrafficProfile(pattern, seed, minFloor, maxFloor, numberOfPeople, 2000),
+                    minFloor, maxFloor, elevators);
+            clock.shutdown();
+            System.out.println(pattern + " bulk");
+            try {
+                System.out.println(new BulkSimulation(elevators.size(), minFloor, maxFloor).run(
+                        new TrafficProfile(pattern, seed, minFloor, maxFloor, numberOfPeople, 2000)));
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // journals a busy building, takes a snapshot part way, stops it with calls still queued and restores it from
+    // the journal directory. the restored cars must be where they were with the same queues, and the same calls
+    // must still be pending
+    public static void test9(int minFloor, int maxFloor, int numberOfPeople, List<String> elevators, long seed) {
+        try {
+            Path dir = Files.createTempDirectory("building-journal");
+            VirtualClock clock = new VirtualClock();
+            Building building = BuildingJournal.create(dir, "building1", elevators, minFloor, maxFloor, clock,
+                    ExecutionMode.SHARED_SCHEDULER);
+            building.start();
+            TrafficSource traffic = new TrafficProfile(TrafficProfile.Pattern.LUNCH, seed, minFloor, maxFloor,
+                    numberOfPeople, 500);
+            clock.register();
+            try {
+                int submitted = 0;
+                for (Trip trip = traffic.next(); trip != null; trip = traffic.next()) {
+                    long delay = trip.getTime() - clock.currentTimeMillis();
+                    if (delay > 0) {
+                        clock.sleep(delay);
+                    }
+                    building.submit(building.makeRequest(trip.getFrom(), trip.getTo()));
+                    if (++submitted == numberOfPeople / 2) {
+                        building.journal().snapshot(); // the rest is replayed from the journal
+                    }
+                }
+            }
+            finally {
+                clock.unregister();
+            }
+            building.stop();
+            building.awaitTermination(1, TimeUnit.MINUTES);
+            String before = describe(building);
+            building.journal().close();
+            clock.shutdown();
+
+            VirtualClock restoredClock = new VirtualClock();
+            Building restored = BuildingJournal.restore(dir, restoredClock, ExecutionMode.SHARED_SCHEDULER);
+            String after = describe(restored);
+            System.out.println("before   " + before);
+            System.out.println("restored " + after);
+            restored.journal().close();
+            restoredClock.shutdown();
+            if (!before.equals(after)) {
+                throw new RuntimeException("Restored building differs from the one journalled");
+            }
+        }
+        catch (IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String describe(Building building) {
+        StringBuilder s = new StringBuilder();
+        Fleet fleet = building.fleet();
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            s.append(fleet.id(slot)).append(' ').append(fleet.snapshot(slot)).append("; ");
+        }
+        return s.append("pending ").append(building.pendingRequests()).toString();
+    }
+
+    public static void replay(SimulationClock clock, TrafficSource traffic, int minFloor, int maxFloor,
+                              List<String> elevators) {
+        replay(clock, traffic, minFloor, maxFloor, elevators, false);
+    }
+
+    public static void replay(SimulationClock clock, TrafficSource traffic, int minFloor, int maxFloor,
+                              List<String> elevators, boolean parking) {
+        Building building = new Building("building1", elevators, minFloor, maxFloor, clock,
+                ExecutionMode.SHARED_SCHEDULER);
+        if (parking) {
+            building.setDemandForecaster(new DemandForecaster(minFloor, maxFloor));
+        }
+        building.start();
+        try {
+            System.out.println(new LoadGenerator(building).run(traffic));
+        }
+        catch (IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        building.stop();
+        try {
+            building.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
     }
 
 }
@@ -0,0 +1,10 @@
+package elevatorsystem;
+
+// the original rule: closest stationary car, or closest car already moving towards the caller in their direction
+public class NearestCarStrategy implements DispatchStrategy {
+
+    @Override
+    public int select(Fleet fleet, ElevatorRequest request) {
+        return fleet.nearest(request.getFrom(), request.getType());
+    }
+}
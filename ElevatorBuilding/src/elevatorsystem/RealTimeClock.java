@@ -0,0 +1,74 @@
+package elevatorsystem;
+
+import java.util.concurrent.*;
+
+// wall clock time. sleeps and waits block the calling thread for real
+class RealTimeClock implements SimulationClock {
+
+    static final RealTimeClock INSTANCE = new RealTimeClock(null);
+
+    private volatile ScheduledExecutorService executor;
+
+    RealTimeClock(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        monitor.wait(Math.max(millis, 0));
+    }
+
+    @Override
+    public void signalAll(Object monitor) {
+        monitor.notifyAll();
+    }
+
+    @Override
+    public Future<?> schedule(Runnable task, long delay_millis) {
+        return executor().schedule(task, Math.max(delay_millis, 0), TimeUnit.MILLISECONDS);
+    }
+
+    private ScheduledExecutorService executor() {
+        ScheduledExecutorService e = executor;
+        if (e == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    // shared by every building on the default clock. daemon threads, so it never keeps the JVM alive
+                    ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(
+                            Runtime.getRuntime().availableProcessors(), task -> {
+                                Thread thread = new Thread(task, "elevator-scheduler");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    pool.setRemoveOnCancelPolicy(true);
+                    executor = pool;
+                }
+                e = executor;
+            }
+        }
+        return e;
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+        return new Thread(task);
+    }
+
+    @Override
+    public void register() {
+    }
+
+    @Override
+    public void unregister() {
+    }
+}
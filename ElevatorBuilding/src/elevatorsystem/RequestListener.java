@@ -0,0 +1,15 @@
+package elevatorsystem;
+
+// told about every request in a building as it moves through its lifecycle. called on the thread that moved it, so
+// implementations must be quick: processed by a dispatcher holding the building's dispatch lock, completed by the
+// arriving elevator's step holding no locks
+public interface RequestListener {
+
+    // an elevator has been assigned
+    default void processed(ElevatorRequest request) {
+    }
+
+    // the passenger has reached the destination floor
+    default void completed(ElevatorRequest request) {
+    }
+}
@@ -0,0 +1,40 @@
+package elevatorsystem;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+// source of time for elevators and queues. every sleep or monitor wait in the simulation goes through here so
+// the same dispatch logic can run against the wall clock or against virtual time
+public interface SimulationClock {
+
+    long currentTimeMillis();
+
+    void sleep(long millis) throws InterruptedException;
+
+    // waits on monitor, which the caller must hold, until signalAll(monitor) is called or millis pass. millis <= 0
+    // waits until signalled
+    void await(Object monitor, long millis) throws InterruptedException;
+
+    // wakes every thread in await(monitor, ...). the caller must hold monitor
+    void signalAll(Object monitor);
+
+    // runs task once after delay_millis on a thread shared by the whole simulation. tasks must not block
+    Future<?> schedule(Runnable task, long delay_millis);
+
+    // creates (but does not start) a thread that takes part in the simulation
+    Thread newThread(Runnable task);
+
+    // makes the calling thread take part in the simulation until unregister() is called
+    void register();
+
+    void unregister();
+
+    static SimulationClock realTime() {
+        return RealTimeClock.INSTANCE;
+    }
+
+    // wall clock time, running scheduled tasks on the given executor instead of the default shared one
+    static SimulationClock realTime(ScheduledExecutorService executor) {
+        return new RealTimeClock(executor);
+    }
+}
@@ -0,0 +1,164 @@
+package elevatorsystem;
+
+// a detached copy of one car's stop plan: where it is, which way it is going, the floors its riders get off at and
+// where the calls it has still to pick up are going. all of it is bitsets, so copying takes the queue's lock only for a
+// few array copies however many people are queued, after which the plan can be played forward on any thread without
+// touching the car. the play follows the queue's LOOK rules, jumping from one floor where something happens to the
+// next, so what-if questions get the answer the car itself would give in a handful of word scans
+class StopPlan {
+
+    private static final int NONE = -1;
+
+    private final int minFloor;
+    private final int floor;     // relative to minFloor, as are all floors below
+    private final int direction; // 1 up, -1 down, 0 stationary
+    private final long[] dropOffs;
+    private final long[] upCalls;   // floors with calls going up
+    private final long[] downCalls; // floors with calls going down
+    private final long[] upTo;      // destination rows of the calls going up, as CallMap.copyDestinations
+    private final long[] downTo;
+
+    // scratch for one play, a plan is only ever used by one thread
+    private final long[] drops;
+    private final long[] ups;
+    private final long[] downs;
+    private int extraFrom = NONE; // the call being tried out
+    private int extraTo;
+    private long pickedUpAt;
+
+    StopPlan(int min_floor, int floor, ElevatorStatus status, ElevatorMap riders, CallMap up, CallMap down) {
+        minFloor = min_floor;
+        this.floor = floor - min_floor;
+        direction = status == ElevatorStatus.UP ? 1 : status == ElevatorStatus.DOWN ? -1 : 0;
+        dropOffs = riders.copyDropOffs();
+        upCalls = up.copyFloors();
+        downCalls = down.copyFloors();
+        upTo = up.copyDestinations();
+        downTo = down.copyDestinations();
+        drops = new long[dropOffs.length];
+        ups = new long[dropOffs.length];
+        downs = new long[dropOffs.length];
+    }
+
+    // what giving request to this car would cost in milliseconds: how long the caller waits to be picked up, plus
+    // how much longer the car takes to finish everything it already has
+    long cost(ElevatorRequest request, long between_floors, long doors) {
+        extraFrom = NONE;
+        long without = play(between_floors, doors);
+        extraFrom = request.getFrom() - minFloor;
+        extraTo = request.getTo() - minFloor;
+        long with = play(between_floors, doors);
+        extraFrom = NONE;
+        return pickedUpAt + (with - without);
+    }
+
+    // plays the plan forward until the car has nothing left to do. returns how long that takes
+    private long play(long between_floors, long doors) {
+        System.arraycopy(dropOffs, 0, drops, 0, drops.length);
+        System.arraycopy(upCalls, 0, ups, 0, ups.length);
+        System.arraycopy(downCalls, 0, downs, 0, downs.length);
+        if (extraFrom != NONE) {
+            set(extraFrom < extraTo ? ups : downs, extraFrom);
+        }
+        pickedUpAt = 0;
+        int f = floor;
+        int dir = direction;
+        long t = 0;
+        if (dir != 0 && next(f, dir, true) == NONE) {
+            dir = 0; // heading somewhere the plan does not know about, such as a parking floor
+        }
+        if (dir == 0) {
+            // as process(): riders first, then calls from this floor, then the nearest call
+            boolean stop = take(drops, f);
+            if (next(f, 1, false) != NONE || next(f, -1, false) != NONE) {
+                dir = next(f, 1, false) != NONE ? 1 : -1;
+            }
+            else if (board(f, 1, t)) {
+                stop = true;
+                dir = 1; // the others are served on the way back
+            }
+            else if (board(f, -1, t)) {
+                stop = true;
+                dir = -1;
+            }
+            else {
+                int above = next(f, 1, true);
+                int below = next(f, -1, true);
+                if (above == NONE && below == NONE) {
+                    return stop ? doors : 0;
+                }
+                dir = below == NONE || (above != NONE && above - f <= f - below) ? 1 : -1;
+            }
+            if (stop) {
+                t += doors;
+            }
+        }
+        while (true) {
+            // as reachFloor(), at the next floor where anything happens
+            int g = next(f, dir, true);
+            t += (long) Math.abs(g - f) * between_floors;
+            f = g;
+            boolean stop = take(drops, f);
+            stop = board(f, dir, t) || stop;
+            if (next(f, dir, true) == NONE) {
+                stop = board(f, -dir, t) || stop;
+                dir = next(f, -dir, true) != NONE ? -dir : 0;
+            }
+            if (stop) {
+                t += doors;
+            }
+            if (dir == 0) {
+                return t;
+            }
+        }
+    }
+
+    // picks up every call from f going way dir. returns whether there was anyone
+    private boolean board(int f, int dir, long t) {
+        if (!take(dir > 0 ? ups : downs, f)) {
+            return false;
+        }
+        long[] to = dir > 0 ? upTo : downTo;
+        for (int w = 0; w < drops.length; w++) {
+            drops[w] |= to[f * drops.length + w];
+        }
+        if (f == extraFrom && (extraTo > f) == (dir > 0)) {
+            set(drops, extraTo);
+            pickedUpAt = t;
+        }
+        return true;
+    }
+
+    // closest floor past f going way dir with a drop off, or with a call too if calls is set. NONE if there is none
+    private int next(int f, int dir, boolean calls) {
+        int i = f + dir;
+        if (i < 0 || i >= drops.length << 6) {
+            return NONE;
+        }
+        int w = i >>> 6;
+        long word = (dir > 0 ? -1L << i : -1L >>> (63 - (i & 63))) & at(w, calls);
+        while (word == 0) {
+            w += dir;
+            if (w < 0 || w == drops.length) {
+                return NONE;
+            }
+            word = at(w, calls);
+        }
+        return (w << 6) + (dir > 0 ? Long.numberOfTrailingZeros(word) : 63 - Long.numberOfLeadingZeros(word));
+    }
+
+    private long at(int w, boolean calls) {
+        return calls ? drops[w] | ups[w] | downs[w] : drops[w];
+    }
+
+    private static boolean take(long[] bits, int f) {
+        long bit = 1L << f;
+        boolean had = (bits[f >>> 6] & bit) != 0;
+        bits[f >>> 6] &= ~bit;
+        return had;
+    }
+
+    private static void set(long[] bits, int f) {
+        bits[f >>> 6] |= 1L << f;
+    }
+}
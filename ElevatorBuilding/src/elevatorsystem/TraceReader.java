@@ -0,0 +1,68 @@
+package elevatorsystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// replays a recorded trace, one JSON object per line: {"time": 1200, "from": 1, "to": 7}. time is milliseconds
+// from the start of the trace. lines are read as they are needed, and blank lines are skipped
+public class TraceReader implements TrafficSource {
+
+    private final BufferedReader in;
+    private long lineNumber = 0;
+
+    public TraceReader(Path trace) throws IOException {
+        this(Files.newBufferedReader(trace, StandardCharsets.UTF_8));
+    }
+
+    public TraceReader(Reader in) {
+        this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+    }
+
+    @Override
+    public Trip next() throws IOException {
+        String line;
+        do {
+            line = in.readLine();
+            lineNumber++;
+            if (line == null) {
+                return null;
+            }
+        } while (line.trim().isEmpty());
+        return new Trip(field(line, "time"), (int) field(line, "from"), (int) field(line, "to"));
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // value of a whole number field in a flat JSON object, without building a tree for the line
+    private long field(String line, String name) {
+        int at = line.indexOf("\"" + name + "\"");
+        if (at < 0) {
+            throw new RuntimeException("Trace line " + lineNumber + " has no \"" + name + "\": " + line);
+        }
+        int i = at + name.length() + 2;
+        while (i < line.length() && (line.charAt(i) == ' ' || line.charAt(i) == ':')) {
+            i++;
+        }
+        boolean negative = i < line.length() && line.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        int start = i;
+        long value = 0;
+        while (i < line.length() && Character.isDigit(line.charAt(i))) {
+            value = value * 10 + (line.charAt(i) - '0');
+            i++;
+        }
+        if (i == start) {
+            throw new RuntimeException("Trace line " + lineNumber + " has a bad \"" + name + "\": " + line);
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,49 @@
+package elevatorsystem;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// writes trips in the format TraceReader reads
+public class TraceWriter implements Closeable {
+
+    private final BufferedWriter out;
+    private final StringBuilder line = new StringBuilder(64);
+
+    public TraceWriter(Path trace) throws IOException {
+        out = Files.newBufferedWriter(trace, StandardCharsets.UTF_8);
+    }
+
+    public void write(Trip trip) throws IOException {
+        line.setLength(0);
+        line.append("{\"time\": ").append(trip.getTime())
+                .append(", \"from\": ").append(trip.getFrom())
+                .append(", \"to\": ").append(trip.getTo())
+                .append("}\n");
+        out.append(line);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // records every trip of source to trace, for example to keep a synthetic profile as a fixed regression trace.
+    // returns the number of trips written
+    public static long record(TrafficSource source, Path trace) throws IOException {
+        long written = 0;
+        try (TraceWriter writer = new TraceWriter(trace)) {
+            for (Trip trip = source.next(); trip != null; trip = source.next()) {
+                writer.write(trip);
+                written++;
+            }
+        }
+        finally {
+            source.close();
+        }
+        return written;
+    }
+}
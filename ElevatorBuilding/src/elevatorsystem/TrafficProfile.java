@@ -0,0 +1,73 @@
+package elevatorsystem;
+
+import java.util.Random;
+
+// seeded synthetic traffic. arrivals are a Poisson process with the given mean gap, and trips follow one of the
+// classic office patterns with the lobby at min_floor. the same seed always gives the same trips
+public class TrafficProfile implements TrafficSource {
+
+    public enum Pattern {
+        UP_PEAK,   // morning: most people come in at the lobby and go up
+        DOWN_PEAK, // evening: most people go down to the lobby
+        LUNCH      // midday: out to the lobby, back up from it and between floors in about equal measure
+    }
+
+    private final Pattern pattern;
+    private final Random random;
+    private final int minFloor;
+    private final int maxFloor;
+    private final int trips;
+    private final double meanInterval;
+    private int generated = 0;
+    private double time = 0;
+
+    public TrafficProfile(Pattern pattern, long seed, int min_floor, int max_floor, int trips,
+                          long mean_interval_millis) {
+        if (max_floor <= min_floor) {
+            throw new RuntimeException("Traffic needs at least two floors: " + min_floor + " to " + max_floor);
+        }
+        this.pattern = pattern;
+        this.random = new Random(seed);
+        this.minFloor = min_floor;
+        this.maxFloor = max_floor;
+        this.trips = trips;
+        this.meanInterval = mean_interval_millis;
+    }
+
+    @Override
+    public Trip next() {
+        if (generated == trips) {
+            return null;
+        }
+        generated++;
+        time += -Math.log(1 - random.nextDouble()) * meanInterval;
+        double roll = random.nextDouble();
+        switch (pattern) {
+            case UP_PEAK:
+                return roll < 0.85 ? new Trip((long) time, minFloor, upper()) : interFloor();
+            case DOWN_PEAK:
+                return roll < 0.85 ? new Trip((long) time, upper(), minFloor) : interFloor();
+            case LUNCH:
+                if (roll < 0.4) {
+                    return new Trip((long) time, upper(), minFloor);
+                }
+                return roll < 0.8 ? new Trip((long) time, minFloor, upper()) : interFloor();
+            default:
+                throw new RuntimeException("Unsupported traffic pattern: " + pattern);
+        }
+    }
+
+    // any floor above the lobby
+    private int upper() {
+        return minFloor + 1 + random.nextInt(maxFloor - minFloor);
+    }
+
+    private Trip interFloor() {
+        int from = minFloor + random.nextInt(maxFloor - minFloor + 1);
+        int to = minFloor + random.nextInt(maxFloor - minFloor);
+        if (to >= from) {
+            to++; // every floor but from
+        }
+        return new Trip((long) time, from, to);
+    }
+}
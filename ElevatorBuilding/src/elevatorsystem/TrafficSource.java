@@ -0,0 +1,16 @@
+package elevatorsystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// a stream of trips in time order. sources hand out one trip at a time, so a trace of any length is never held in
+// memory all at once
+public interface TrafficSource extends Closeable {
+
+    // the next trip, or null once the source is exhausted
+    Trip next() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
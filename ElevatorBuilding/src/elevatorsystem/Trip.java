@@ -0,0 +1,32 @@
+package elevatorsystem;
+
+// one passenger in a traffic source: they call for a lift at floor from, at time millis after the start, going to to
+public final class Trip {
+
+    private final long time;
+    private final int from;
+    private final int to;
+
+    public Trip(long time, int from, int to) {
+        this.time = time;
+        this.from = from;
+        this.to = to;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return time + ": " + from + " to " + to;
+    }
+}
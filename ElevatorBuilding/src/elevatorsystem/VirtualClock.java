@@ -0,0 +1,282 @@
+package elevatorsystem;
+
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// discrete-event clock. time only moves when every participating thread is blocked in sleep() or await(), and it
+// then jumps straight to the earliest pending wake up, so a simulated day runs as fast as the dispatch logic allows.
+// scheduled tasks run in time order on the clock's own driver thread
+public class VirtualClock implements SimulationClock {
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final Object lock = new Object();
+    private final PriorityQueue<Waiter> timed = new PriorityQueue<>();
+    private final Map<Object, List<Waiter>> monitorWaiters = new IdentityHashMap<>();
+    private final ThreadLocal<Boolean> party = new ThreadLocal<>();
+    private final Thread driver;
+
+    private long now;
+    private long sequence = 0;
+    private int parties = 0;
+    private int blocked = 0;
+    private boolean running = true;
+
+    private static class Waiter implements Comparable<Waiter> {
+        final Object monitor;
+        final long wakeAt;
+        final long seq;
+        final boolean counted;
+        final FutureTask<?> task;
+        volatile boolean woken = false;
+
+        Waiter(Object monitor, long wakeAt, long seq, boolean counted, FutureTask<?> task) {
+            this.monitor = monitor;
+            this.wakeAt = wakeAt;
+            this.seq = seq;
+            this.counted = counted;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Waiter o) {
+            if (wakeAt != o.wakeAt) {
+                return Long.compare(wakeAt, o.wakeAt);
+            }
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    public VirtualClock(long start_millis) {
+        now = start_millis;
+        driver = new Thread(this::drive, "virtual-clock");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        synchronized (lock) {
+            return now;
+        }
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis <= 0) {
+            return;
+        }
+        synchronized (lock) {
+            Waiter w = enqueue(null, now + millis);
+            try {
+                while (!w.woken) {
+                    lock.wait();
+                }
+            }
+            catch (InterruptedException e) {
+                cancel(w);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        Waiter w;
+        synchronized (lock) {
+            w = enqueue(monitor, millis > 0 ? now + millis : NEVER);
+        }
+        try {
+            while (!w.woken) {
+                monitor.wait();
+            }
+        }
+        catch (InterruptedException e) {
+            synchronized (lock) {
+                cancel(w);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void signalAll(Object monitor) {
+        synchronized (lock) {
+            List<Waiter> waiters = monitorWaiters.remove(monitor);
+            if (waiters != null) {
+                waiters.forEach(this::wake);
+            }
+        }
+        monitor.notifyAll();
+    }
+
+    @Override
+    public Future<?> schedule(Runnable task, long delay_millis) {
+        ScheduledTask scheduled = new ScheduledTask(task);
+        synchronized (lock) {
+            scheduled.waiter = new Waiter(null, now + Math.max(delay_millis, 0), sequence++, false, scheduled);
+            timed.add(scheduled.waiter);
+            lock.notifyAll();
+        }
+        return scheduled;
+    }
+
+    private class ScheduledTask extends FutureTask<Void> {
+        Waiter waiter;
+
+        ScheduledTask(Runnable task) {
+            super(task, null);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                synchronized (lock) {
+                    timed.remove(waiter); // so a cancelled task cannot drag the clock forward
+                }
+            }
+            return cancelled;
+        }
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+        synchronized (lock) {
+            parties++;
+        }
+        return new Thread(() -> {
+            party.set(true);
+            try {
+                task.run();
+            }
+            finally {
+                party.remove();
+                leave();
+            }
+        });
+    }
+
+    @Override
+    public void register() {
+        if (!Boolean.TRUE.equals(party.get())) {
+            party.set(true);
+            synchronized (lock) {
+                parties++;
+            }
+        }
+    }
+
+    @Override
+    public void unregister() {
+        if (Boolean.TRUE.equals(party.get())) {
+            party.remove();
+            leave();
+        }
+    }
+
+    public void shutdown() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+    }
+
+    private void leave() {
+        synchronized (lock) {
+            parties--;
+            lock.notifyAll();
+        }
+    }
+
+    // must hold lock
+    private Waiter enqueue(Object monitor, long wakeAt) {
+        boolean counted = Boolean.TRUE.equals(party.get());
+        Waiter w = new Waiter(monitor, wakeAt, sequence++, counted, null);
+        if (wakeAt != NEVER) {
+            timed.add(w);
+        }
+        if (monitor != null) {
+            monitorWaiters.computeIfAbsent(monitor, m -> new ArrayList<>()).add(w);
+        }
+        if (counted) {
+            blocked++;
+            lock.notifyAll(); // this might be the last runnable party, let the driver check
+        }
+        return w;
+    }
+
+    // must hold lock
+    private void wake(Waiter w) {
+        if (!w.woken) {
+            w.woken = true;
+            timed.remove(w);
+            if (w.counted) {
+                blocked--;
+            }
+        }
+    }
+
+    // must hold lock
+    private void cancel(Waiter w) {
+        wake(w);
+        if (w.monitor != null) {
+            List<Waiter> waiters = monitorWaiters.get(w.monitor);
+            if (waiters != null) {
+                waiters.remove(w);
+            }
+        }
+    }
+
+    private void drive() {
+        List<Object> toNotify = new ArrayList<>();
+        List<FutureTask<?>> toRun = new ArrayList<>();
+        while (true) {
+            synchronized (lock) {
+                try {
+                    while (running && (blocked < parties || timed.isEmpty())) {
+                        lock.wait();
+                    }
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                if (!running) {
+                    return;
+                }
+                now = Math.max(now, timed.peek().wakeAt);
+                while (!timed.isEmpty() && timed.peek().wakeAt <= now) {
+                    Waiter w = timed.peek();
+                    if (w.task != null) {
+                        timed.poll();
+                        toRun.add(w.task);
+                    }
+                    else if (w.monitor != null) {
+                        cancel(w);
+                        toNotify.add(w.monitor);
+                    }
+                    else {
+                        wake(w);
+                    }
+                }
+                lock.notifyAll();
+            }
+            // monitors are taken without holding lock, since their owners call into the clock while holding them
+            for (Object monitor : toNotify) {
+                synchronized (monitor) {
+                    monitor.notifyAll();
+                }
+            }
+            toNotify.clear();
+            for (FutureTask<?> task : toRun) {
+                task.run();
+            }
+            toRun.clear();
+        }
+    }
+}
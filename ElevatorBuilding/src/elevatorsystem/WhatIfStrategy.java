@@ -0,0 +1,81 @@
+package elevatorsystem;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// tries the request out on a copy of every car's stop plan and picks the car where it costs least: the caller's
+// wait plus how much it holds up everyone the car already has. the copies are played forward in parallel on a
+// fork-join pool, a few cars per task, and nothing touches a real car until the winner is given the request
+public class WhatIfStrategy implements DispatchStrategy {
+
+    static final int cars_per_task = 8;
+
+    private static final int SLOT_BITS = 20;
+    private static final long MAX_COST = (1L << (63 - SLOT_BITS)) - 1;
+    private static final long NONE = Long.MAX_VALUE;
+
+    private final ForkJoinPool pool;
+
+    public WhatIfStrategy() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public WhatIfStrategy(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public int select(Fleet fleet, ElevatorRequest request) {
+        long best;
+        if (fleet.size() <= cars_per_task) {
+            best = evaluate(fleet, request, 0, fleet.size()); // not worth handing over
+        }
+        else {
+            best = pool.invoke(new Evaluation(fleet, request, 0, fleet.size()));
+        }
+        return best == NONE ? -1 : (int) (best & ((1L << SLOT_BITS) - 1));
+    }
+
+    // cheapest car among slots from to to, as cost and slot packed into one long so that the lowest value wins and
+    // equal costs go to the lowest slot. NONE if no car there has room
+    static long evaluate(Fleet fleet, ElevatorRequest request, int from, int to) {
+        long best = NONE;
+        for (int slot = from; slot < to; slot++) {
+            if (!fleet.hasRoom(slot)) {
+                continue;
+            }
+            long cost = fleet.plan(slot).cost(request, fleet.millisBetweenFloors(), fleet.millisOpeningClosingDoors());
+            best = Math.min(best, Math.min(cost, MAX_COST) << SLOT_BITS | slot);
+        }
+        return best;
+    }
+
+    private static final class Evaluation extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Fleet fleet;
+        private final ElevatorRequest request;
+        private final int from;
+        private final int to;
+
+        Evaluation(Fleet fleet, ElevatorRequest request, int from, int to) {
+            this.fleet = fleet;
+            this.request = request;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= cars_per_task) {
+                return evaluate(fleet, request, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            Evaluation upper = new Evaluation(fleet, request, middle, to);
+            upper.fork();
+            long lower = new Evaluation(fleet, request, from, middle).compute();
+            return Math.min(lower, upper.join());
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package elevatorsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// a tower split into floor zones, such as low and high rise locals with express cars up to a sky lobby. every zone
+// is a Building of its own, with its own cars, dispatch index and lock, so dispatch work and contention grow with
+// the zone rather than the tower. a trip that no single zone covers is split into legs that change cars at floors
+// two zones share, taking the fewest changes and then the fewest floors on local cars
+public class ZonedBuilding {
+
+    private static final long CHANGE = 1_000_000; // one more leg outweighs any number of floors
+
+    private final String buildingID;
+    private final SimulationClock clock;
+    private final ExecutionMode mode;
+    private final List<Zone> zones = new CopyOnWriteArrayList<>();
+
+    private static final class Zone {
+        final String name;
+        final Building building;
+        final boolean express; // stops only at the ends of its range
+
+        Zone(String name, Building building, boolean express) {
+            this.name = name;
+            this.building = building;
+            this.express = express;
+        }
+
+        boolean serves(int floor) {
+            if (express) {
+                return floor == building.minFloor() || floor == building.maxFloor();
+            }
+            return floor >= building.minFloor() && floor <= building.maxFloor();
+        }
+    }
+
+    // one car ride of a trip
+    private static final class Leg {
+        final Zone zone;
+        final int from;
+        final int to;
+
+        Leg(Zone zone, int from, int to) {
+            this.zone = zone;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    public ZonedBuilding(String building_ID) {
+        this(building_ID, SimulationClock.realTime(), ExecutionMode.SHARED_SCHEDULER);
+    }
+
+    public ZonedBuilding(String building_ID, SimulationClock clock, ExecutionMode mode) {
+        buildingID = building_ID;
+        this.clock = clock;
+        this.mode = mode;
+    }
+
+    // a group of cars serving every floor from min_floor to max_floor. add zones before starting
+    public Building addZone(String name, List<String> elevators, int min_floor, int max_floor) {
+        return add(name, elevators, min_floor, max_floor, false);
+    }
+
+    // cars that run non-stop between min_floor and max_floor, such as the lobby and a sky lobby
+    public Building addExpressZone(String name, List<String> elevators, int min_floor, int max_floor) {
+        return add(name, elevators, min_floor, max_floor, true);
+    }
+
+    private Building add(String name, List<String> elevators, int min_floor, int max_floor, boolean express) {
+        for (Zone zone : zones) {
+            if (zone.name.equals(name)) {
+                throw new RuntimeException("Zone " + name + " already in " + buildingID);
+            }
+        }
+        Building building = new Building(buildingID + "/" + name, elevators, min_floor, max_floor, clock, mode);
+        zones.add(new Zone(name, building, express));
+        return building;
+    }
+
+    public Building zone(String name) {
+        for (Zone zone : zones) {
+            if (zone.name.equals(name)) {
+                return zone.building;
+            }
+        }
+        throw new RuntimeException("No zone " + name + " in " + buildingID);
+    }
+
+    public Collection<Building> zones() {
+        List<Building> buildings = new ArrayList<>();
+        zones.forEach(zone -> buildings.add(zone.building));
+        return buildings;
+    }
+
+    // sends the passenger on the first leg. each later leg is submitted as the one before it arrives
+    public ZonedTrip submit(int from, int to) {
+        List<Leg> legs = route(from, to);
+        ZonedTrip trip = new ZonedTrip(from, to, clock);
+        submit(trip, legs, 0);
+        return trip;
+    }
+
+    private void submit(ZonedTrip trip, List<Leg> legs, int i) {
+        Leg leg = legs.get(i);
+        ElevatorRequest request = leg.zone.building.makeRequest(leg.from, leg.to);
+        trip.legSubmitted(request);
+        leg.zone.building.submit(request).whenComplete((arrived, failure) -> {
+            if (failure != null) {
+                trip.fail(failure);
+            }
+            else if (i + 1 == legs.size()) {
+                trip.complete();
+            }
+            else {
+                submit(trip, legs, i + 1);
+            }
+        });
+    }
+
+    // cheapest way from floor from to floor to, over the floors where passengers can change zones
+    private List<Leg> route(int from, int to) {
+        if (from == to) {
+            throw new RuntimeException("Trip must change floors: " + from);
+        }
+        TreeSet<Integer> stops = new TreeSet<>();
+        stops.add(from);
+        stops.add(to);
+        for (Zone a : zones) {
+            for (Zone b : zones) {
+                if (a != b) {
+                    for (int floor = a.building.minFloor(); floor <= a.building.maxFloor(); floor++) {
+                        if (a.serves(floor) && b.serves(floor)) {
+                            stops.add(floor);
+                        }
+                    }
+                }
+            }
+        }
+        int[] floors = new int[stops.size()];
+        int n = 0;
+        for (int floor : stops) {
+            floors[n++] = floor;
+        }
+        // dijkstra over those floors, few enough that a plain scan for the next closest does
+        long[] cost = new long[n];
+        Leg[] via = new Leg[n];
+        boolean[] done = new boolean[n];
+        Arrays.fill(cost, Long.MAX_VALUE);
+        cost[index(floors, from)] = 0;
+        while (true) {
+            int u = -1;
+            for (int k = 0; k < n; k++) {
+                if (!done[k] && cost[k] != Long.MAX_VALUE && (u < 0 || cost[k] < cost[u])) {
+                    u = k;
+                }
+            }
+            if (u < 0) {
+                throw new RuntimeException("No zones of " + buildingID + " connect floor " + from + " to " + to);
+            }
+            if (floors[u] == to) {
+                break;
+            }
+            done[u] = true;
+            for (Zone zone : zones) {
+                if (!zone.serves(floors[u])) {
+                    continue;
+                }
+                for (int v = 0; v < n; v++) {
+                    if (v != u && !done[v] && zone.serves(floors[v])) {
+                        long c = cost[u] + CHANGE + (zone.express ? 0 : Math.abs(floors[v] - floors[u]));
+                        if (c < cost[v]) {
+                            cost[v] = c;
+                            via[v] = new Leg(zone, floors[u], floors[v]);
+                        }
+                    }
+                }
+            }
+        }
+        List<Leg> legs = new ArrayList<>();
+        for (Leg leg = via[index(floors, to)]; leg != null; leg = via[index(floors, leg.from)]) {
+            legs.add(0, leg);
+        }
+        return legs;
+    }
+
+    private static int index(int[] floors, int floor) {
+        return Arrays.binarySearch(floors, floor);
+    }
+
+    public void start() {
+        zones.forEach(zone -> zone.building.start());
+    }
+
+    public void stop() {
+        zones.forEach(zone -> zone.building.stop());
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Zone zone : zones) {
+            if (!zone.building.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getID() {
+        return buildingID;
+    }
+
+    public SimulationClock clock() {
+        return clock;
+    }
+}
@@ -0,0 +1,72 @@
+package elevatorsystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// one passenger's journey through a ZonedBuilding. it is made of one request per zone it passes through, each
+// submitted when the one before it arrives at the transfer floor
+public class ZonedTrip {
+
+    private final int from;
+    private final int to;
+    private final SimulationClock clock;
+    private final List<ElevatorRequest> legs = new ArrayList<>(); // guarded by this
+    private final CompletableFuture<ZonedTrip> completed = new CompletableFuture<>();
+
+    ZonedTrip(int from, int to, SimulationClock clock) {
+        this.from = from;
+        this.to = to;
+        this.clock = clock;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    // the legs submitted so far, in order
+    public synchronized List<ElevatorRequest> legs() {
+        return Collections.unmodifiableList(new ArrayList<>(legs));
+    }
+
+    public boolean isComplete() {
+        return completed.isDone();
+    }
+
+    public CompletableFuture<ZonedTrip> whenCompleted() {
+        return completed;
+    }
+
+    // blocks until the passenger has reached the destination floor. waits through the clock, like
+    // ElevatorRequest.awaitCompletion
+    public void awaitCompletion() throws InterruptedException {
+        synchronized (this) {
+            while (!isComplete()) {
+                clock.await(this, 0);
+            }
+        }
+    }
+
+    synchronized void legSubmitted(ElevatorRequest leg) {
+        legs.add(leg);
+    }
+
+    void complete() {
+        completed.complete(this);
+        synchronized (this) {
+            clock.signalAll(this);
+        }
+    }
+
+    void fail(Throwable failure) {
+        completed.completeExceptionally(failure);
+        synchronized (this) {
+            clock.signalAll(this);
+        }
+    }
+}